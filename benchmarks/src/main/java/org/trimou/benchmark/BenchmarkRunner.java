@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected benchmarks with the GC profiler (allocation rate) for 1, 2,
+ * 4, ... up to the max number of threads.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar [include regexp] [max threads]
+ * </pre>
+ *
+ * The default JMH command line is still available through
+ * <code>java -cp target/benchmarks.jar org.openjdk.jmh.Main</code>.
+ *
+ * @author Martin Kouba
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+                .getRuntime().availableProcessors();
+
+        for (int threads = 1; threads <= maxThreads; threads = nextThreads(
+                threads, maxThreads)) {
+            ChainedOptionsBuilder builder = new OptionsBuilder()
+                    .include(include).threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .output("target/benchmarks-" + threads + "t.log");
+            new Runner(builder.build()).run();
+        }
+    }
+
+    private static int nextThreads(int threads, int maxThreads) {
+        if (threads == maxThreads) {
+            return maxThreads + 1;
+        }
+        return Math.min(threads * 2, maxThreads);
+    }
+
+}
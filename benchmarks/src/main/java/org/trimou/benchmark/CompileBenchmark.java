@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.parser.Parser;
+import org.trimou.engine.parser.ParserFactory;
+import org.trimou.engine.parser.ParsingHandler;
+import org.trimou.engine.parser.ParsingHandlerFactory;
+
+/**
+ * Measures the parsing and compilation of a template, i.e. the parser plus the
+ * default parsing handler building the segment tree. Referenced partials and
+ * extended templates are not compiled.
+ *
+ * @author Martin Kouba
+ * @see org.trimou.engine.parser.ParserBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompileBenchmark {
+
+    @Param({ Templates.SIMPLE, Templates.LAYOUT, Templates.ITERATION,
+            Templates.HELPERS })
+    public String template;
+
+    private MustacheEngine engine;
+
+    private Parser parser;
+
+    private ParsingHandlerFactory handlerFactory;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        engine = Templates.newEngine(false);
+        parser = new ParserFactory().createParser(engine);
+        handlerFactory = new ParsingHandlerFactory();
+        source = Templates.sources().get(template);
+    }
+
+    @Benchmark
+    public Mustache compile() {
+        ParsingHandler handler = handlerFactory.createParsingHandler();
+        parser.parse(template, new StringReader(source), handler);
+        return handler.getCompiledTemplate();
+    }
+
+}
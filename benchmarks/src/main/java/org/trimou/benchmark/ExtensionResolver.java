@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import org.trimou.engine.priority.WithPriority;
+import org.trimou.engine.resolver.AbstractResolver;
+import org.trimou.engine.resolver.ResolutionContext;
+import org.trimou.engine.resolver.TypeAwareResolver;
+
+/**
+ * Simulates a resolver of an extension (e.g. servlet, CDI or gson) which is
+ * only applicable to a specific type of context object.
+ *
+ * @author Martin Kouba
+ */
+public class ExtensionResolver extends AbstractResolver implements
+        TypeAwareResolver {
+
+    private final Class<?> type;
+
+    /**
+     *
+     * @param type
+     */
+    public ExtensionResolver(Class<?> type) {
+        super(WithPriority.EXTENSION_RESOLVERS_DEFAULT_PRIORITY);
+        this.type = type;
+    }
+
+    @Override
+    public Object resolve(Object contextObject, String name,
+            ResolutionContext context) {
+        return type.isInstance(contextObject) ? contextObject.toString()
+                : null;
+    }
+
+    @Override
+    public boolean isApplicable(Class<?> contextObjectClass) {
+        return contextObjectClass != null
+                && type.isAssignableFrom(contextObjectClass);
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+
+/**
+ * Compares helper invocations with equivalent sections, i.e. the same lookups
+ * are performed for each item. Run with the GC profiler (see
+ * {@link BenchmarkRunner}) - the difference in <code>gc.alloc.rate.norm</code>
+ * divided by {@link #INVOCATIONS} is the number of bytes allocated per helper
+ * invocation (helper options and resolved params).
+ *
+ * @author Martin Kouba
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HelperBenchmark {
+
+    /**
+     * <code>if</code>, <code>isEq</code> and <code>with</code> for each item
+     */
+    public static final int INVOCATIONS = 3 * Templates.ITEMS;
+
+    @Param({ "helpers", "sections" })
+    public String template;
+
+    private Mustache mustache;
+
+    private Map<String, Object> data;
+
+    @Setup
+    public void setup() {
+        MustacheEngine engine = Templates.newEngine(false);
+        if ("helpers".equals(template)) {
+            mustache = engine.compileMustache("helper_invocations",
+                    "{{#each items}}{{#if active}}a{{/if}}"
+                            + "{{#isEq status \"OK\"}}b{{/isEq}}"
+                            + "{{#with owner}}{{name}}{{/with}}{{/each}}");
+        } else {
+            mustache = engine.compileMustache("section_invocations",
+                    "{{#items}}{{#active}}a{{/active}}"
+                            + "{{#status}}b{{/status}}"
+                            + "{{#owner}}{{name}}{{/owner}}{{/items}}");
+        }
+        data = Templates.data();
+    }
+
+    @Benchmark
+    public StringBuilder render(RenderBenchmark.Output output) {
+        StringBuilder builder = output.reset();
+        mustache.render(builder, data);
+        return builder;
+    }
+
+}
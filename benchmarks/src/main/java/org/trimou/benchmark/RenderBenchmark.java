@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+
+/**
+ * Measures {@link Mustache#render(Appendable, Object)} of the compiled (and
+ * cached) templates.
+ *
+ * @author Martin Kouba
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+
+    @Param({ Templates.SIMPLE, Templates.LAYOUT, Templates.ITERATION,
+            Templates.HELPERS })
+    public String template;
+
+    @Param({ "false", "true" })
+    public boolean skipValueEscaping;
+
+    /**
+     * The total number of resolvers, see also
+     * {@link Templates#newEngine(boolean, int)}
+     */
+    @Param({ "4", "10" })
+    public int resolvers;
+
+    private Mustache mustache;
+
+    private Map<String, Object> data;
+
+    @Setup
+    public void setup() {
+        MustacheEngine engine = Templates.newEngine(skipValueEscaping, resolvers);
+        mustache = engine.getMustache(template);
+        data = Templates.data();
+    }
+
+    @Benchmark
+    public StringBuilder render(Output output) {
+        StringBuilder builder = output.reset();
+        mustache.render(builder, data);
+        return builder;
+    }
+
+    /**
+     * The output buffer is reused so that the benchmark does not measure the
+     * growth of the buffer.
+     */
+    @State(Scope.Thread)
+    public static class Output {
+
+        private final StringBuilder builder = new StringBuilder(1024 * 256);
+
+        StringBuilder reset() {
+            builder.setLength(0);
+            return builder;
+        }
+
+    }
+
+}
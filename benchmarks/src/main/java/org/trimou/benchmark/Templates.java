@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.benchmark;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Currency;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.locator.MapTemplateLocator;
+import org.trimou.handlebars.HelpersBuilder;
+
+/**
+ * Representative templates and data shared by all the benchmarks.
+ *
+ * <ul>
+ * <li><code>simple</code> - static text with a few variables,</li>
+ * <li><code>layout</code> - deep chain of extended templates and nested
+ * partials,</li>
+ * <li><code>iteration</code> - a large section iteration,</li>
+ * <li><code>helpers</code> - heavy usage of built-in helpers inside an
+ * iteration.</li>
+ * </ul>
+ *
+ * @author Martin Kouba
+ */
+public final class Templates {
+
+    public static final String SIMPLE = "simple";
+
+    public static final String LAYOUT = "layout";
+
+    public static final String ITERATION = "iteration";
+
+    public static final String HELPERS = "helpers";
+
+    /**
+     * The depth of the extend chain and the partial chain
+     */
+    static final int LAYOUT_DEPTH = 8;
+
+    /**
+     * The number of items used for iterations
+     */
+    static final int ITEMS = 1000;
+
+    /**
+     * The number of resolvers registered by default
+     */
+    static final int DEFAULT_RESOLVERS = 4;
+
+    /**
+     * The types the simulated extension resolvers are applicable to, none of
+     * them is used in the data
+     */
+    private static final Class<?>[] EXTENSION_TYPES = { Date.class,
+            Locale.class, URI.class, File.class, UUID.class, Currency.class,
+            TimeZone.class, BitSet.class };
+
+    private Templates() {
+    }
+
+    /**
+     *
+     * @return the map of template sources, including all the partials and
+     *         extended templates
+     */
+    public static Map<String, String> sources() {
+        Map<String, String> templates = new HashMap<String, String>();
+
+        templates
+                .put(SIMPLE,
+                        "<html>\n<head><title>{{title}}</title></head>\n<body>\n<h1>{{title}}</h1>\n"
+                                + "<p>Hello {{user.name}}, you have {{user.messages}} new messages.</p>\n"
+                                + "<p>{{description}}</p>\n<!-- {{! comment }} -->\n</body>\n</html>");
+
+        // layout -> layout_1 -> ... -> layout_base
+        // every level also includes a chain of partials
+        templates.put("layout_base",
+                "<html>\n<head>{{$head}}<title>Base</title>{{/head}}</head>\n"
+                        + "<body>\n{{>partial_1}}\n{{$content}}No content{{/content}}\n"
+                        + "{{$footer}}Base footer{{/footer}}\n</body>\n</html>");
+        for (int i = 1; i < LAYOUT_DEPTH; i++) {
+            String parent = i == 1 ? "layout_base" : "layout_" + (i - 1);
+            templates.put("layout_" + i, "{{<" + parent
+                    + "}}\n{{$content}}<div class=\"level" + i
+                    + "\">{{$content" + i + "}}{{/content" + i
+                    + "}}</div>{{/content}}\n{{/" + parent + "}}");
+        }
+        templates.put(LAYOUT, "{{<layout_" + (LAYOUT_DEPTH - 1)
+                + "}}\n{{$head}}<title>{{title}}</title>{{/head}}\n"
+                + "{{$content" + (LAYOUT_DEPTH - 1)
+                + "}}<p>{{description}}</p>{{/content"
+                + (LAYOUT_DEPTH - 1) + "}}\n{{/layout_" + (LAYOUT_DEPTH - 1)
+                + "}}");
+        for (int i = 1; i < LAYOUT_DEPTH; i++) {
+            templates.put("partial_" + i, "<span>{{user.name}}</span>"
+                    + (i < LAYOUT_DEPTH - 1 ? "{{>partial_" + (i + 1) + "}}"
+                            : ""));
+        }
+
+        templates.put(ITERATION, "<table>\n{{#items}}\n<tr>\n"
+                + "<td>{{iter.index}}</td>\n<td>{{name}}</td>\n"
+                + "<td>{{description}}</td>\n<td>{{owner.name}}</td>\n"
+                + "</tr>\n{{/items}}\n</table>");
+
+        templates.put(HELPERS, "<ul>\n{{#each items}}\n"
+                + "<li>{{#if active}}<b>{{name}}</b>{{/if}}"
+                + "{{#unless active}}{{name}}{{/unless}}"
+                + "{{#isEq status \"OK\"}} ok{{/isEq}}"
+                + "{{#isNotEq status \"OK\"}} {{status}}{{/isNotEq}}"
+                + "{{#with owner}} ({{name}}){{/with}}"
+                + "{{#isOdd iter.index}} odd{{/isOdd}}</li>\n"
+                + "{{/each}}\n</ul>");
+        return templates;
+    }
+
+    /**
+     *
+     * @param skipValueEscaping
+     * @return a new engine with all the templates available
+     */
+    public static MustacheEngine newEngine(boolean skipValueEscaping) {
+        return newEngine(skipValueEscaping, DEFAULT_RESOLVERS);
+    }
+
+    /**
+     *
+     * @param skipValueEscaping
+     * @param resolvers
+     *            The total number of resolvers, the additional ones simulate
+     *            extension resolvers not applicable to the data
+     * @return a new engine with all the templates available
+     */
+    public static MustacheEngine newEngine(boolean skipValueEscaping,
+            int resolvers) {
+        if (resolvers < DEFAULT_RESOLVERS
+                || resolvers > DEFAULT_RESOLVERS + EXTENSION_TYPES.length) {
+            throw new IllegalArgumentException(
+                    "Unsupported number of resolvers: " + resolvers);
+        }
+        MustacheEngineBuilder builder = MustacheEngineBuilder
+                .newBuilder()
+                .addTemplateLocator(new MapTemplateLocator(sources()))
+                .registerHelpers(HelpersBuilder.extra().build())
+                .setProperty(EngineConfigurationKey.SKIP_VALUE_ESCAPING,
+                        skipValueEscaping);
+        for (int i = DEFAULT_RESOLVERS; i < resolvers; i++) {
+            builder.addResolver(new ExtensionResolver(EXTENSION_TYPES[i
+                    - DEFAULT_RESOLVERS]));
+        }
+        return builder.build();
+    }
+
+    /**
+     *
+     * @return the data used for rendering
+     */
+    public static Map<String, Object> data() {
+        Map<String, Object> data = new HashMap<String, Object>();
+        User user = new User("Martin <martin@trimou.org>", 10);
+        List<Item> items = new ArrayList<Item>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            items.add(new Item("Item " + i, "Description of item " + i
+                    + (i % 10 == 0 ? " & <something> \"quoted\"" : ""),
+                    i % 3 == 0, i % 5 == 0 ? "FAILED" : "OK", user));
+        }
+        data.put("title", "Trimou benchmark");
+        data.put("description",
+                "Typical page with <b>escapable</b> & plain content");
+        data.put("user", user);
+        data.put("items", items);
+        return data;
+    }
+
+    public static class User {
+
+        private final String name;
+
+        private final int messages;
+
+        User(String name, int messages) {
+            this.name = name;
+            this.messages = messages;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMessages() {
+            return messages;
+        }
+
+    }
+
+    public static class Item {
+
+        private final String name;
+
+        private final String description;
+
+        private final boolean active;
+
+        private final String status;
+
+        private final User owner;
+
+        Item(String name, String description, boolean active, String status,
+                User owner) {
+            this.name = name;
+            this.description = description;
+            this.active = active;
+            this.status = status;
+            this.owner = owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public User getOwner() {
+            return owner;
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.parser;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trimou.Mustache;
+import org.trimou.benchmark.Templates;
+import org.trimou.engine.MustacheEngine;
+
+/**
+ * Measures {@link DefaultParser#parse(String, java.io.Reader, ParsingHandler)}
+ * alone - the parsing events are only counted. This benchmark lives in the
+ * parser package because {@link ParsedTag} and {@link Delimiters} are not
+ * public.
+ *
+ * @author Martin Kouba
+ * @see org.trimou.benchmark.CompileBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({ Templates.SIMPLE, Templates.LAYOUT, Templates.ITERATION,
+            Templates.HELPERS })
+    public String template;
+
+    private MustacheEngine engine;
+
+    private Parser parser;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        engine = Templates.newEngine(false);
+        parser = new ParserFactory().createParser(engine);
+        source = Templates.sources().get(template);
+    }
+
+    @Benchmark
+    public int parse() {
+        CountingParsingHandler handler = new CountingParsingHandler();
+        parser.parse(template, new StringReader(source), handler);
+        return handler.events;
+    }
+
+    private static class CountingParsingHandler implements ParsingHandler {
+
+        private int events;
+
+        @Override
+        public void startTemplate(String name, Delimiters delimiters,
+                MustacheEngine engine) {
+            events++;
+        }
+
+        @Override
+        public void text(String text) {
+            events++;
+        }
+
+        @Override
+        public void tag(ParsedTag tag) {
+            events++;
+        }
+
+        @Override
+        public void lineSeparator(String separator) {
+            events++;
+        }
+
+        @Override
+        public void endTemplate() {
+            events++;
+        }
+
+        @Override
+        public Mustache getCompiledTemplate() {
+            return null;
+        }
+
+    }
+
+}
@@ -15,6 +15,9 @@
  */
 package org.trimou;
 
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
 import org.trimou.engine.id.Identified;
 
 /**
@@ -66,4 +69,22 @@ public interface Mustache extends Identified {
      */
     public void render(Appendable appendable, Object data);
 
+    /**
+     * Render the template and write the encoded output directly to the given
+     * stream. Static template text is only encoded once per charset and the
+     * bytes are reused for subsequent renderings.
+     *
+     * The stream is not flushed nor closed automatically.
+     *
+     * @param outputStream
+     *            The stream to write the rendered template to
+     * @param charset
+     *            The charset used to encode the output
+     * @param data
+     *            Optional context object (ideally immutable), may be
+     *            <code>null</code>
+     * @since 1.8.1
+     */
+    public void render(OutputStream outputStream, Charset charset, Object data);
+
 }
@@ -17,16 +17,26 @@ package org.trimou.engine;
 
 import static org.trimou.util.Checker.checkArgumentNotEmpty;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.trimou.Mustache;
 import org.trimou.engine.cache.ComputingCache;
+import org.trimou.engine.cache.WritableComputingCache;
 import org.trimou.engine.config.Configuration;
 import org.trimou.engine.config.ConfigurationFactory;
 import org.trimou.engine.config.EngineConfigurationKey;
@@ -35,10 +45,13 @@ import org.trimou.engine.listener.MustacheListener;
 import org.trimou.engine.listener.MustacheParsingEvent;
 import org.trimou.engine.locator.TemplateLocator;
 import org.trimou.engine.parser.ParserFactory;
+import org.trimou.engine.parser.Template;
 import org.trimou.engine.parser.ParsingHandler;
 import org.trimou.engine.parser.ParsingHandlerFactory;
+import org.trimou.engine.parser.PrecompilationStore;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
+import org.trimou.util.CharBufferReader;
 
 import com.google.common.base.Optional;
 import com.google.common.io.CharStreams;
@@ -63,6 +76,13 @@ class DefaultMustacheEngine implements MustacheEngine {
 
     private final ParsingHandlerFactory parsingHandlerFactory;
 
+    private final TemplateDependencyGraph dependencyGraph;
+
+    /**
+     * Only set during precompilation
+     */
+    private volatile PrecompilationStore precompilationStore;
+
     /**
      * Workaround for CDI (JSR 299, JSR 346) - make this type proxyable so that
      * it's possible to produce an application-scoped CDI bean.
@@ -73,6 +93,7 @@ class DefaultMustacheEngine implements MustacheEngine {
         parsingHandlerFactory = null;
         templateCache = null;
         sourceCache = null;
+        dependencyGraph = null;
     }
 
     /**
@@ -84,6 +105,7 @@ class DefaultMustacheEngine implements MustacheEngine {
         configuration = new ConfigurationFactory().createConfiguration(builder);
         parserFactory = new ParserFactory();
         parsingHandlerFactory = new ParsingHandlerFactory();
+        dependencyGraph = new TemplateDependencyGraph();
 
         if (configuration
                 .getBooleanPropertyValue(EngineConfigurationKey.DEBUG_MODE)) {
@@ -136,6 +158,91 @@ class DefaultMustacheEngine implements MustacheEngine {
         }
         templateCache.clear();
         sourceCache.clear();
+        dependencyGraph.clear();
+    }
+
+    public void invalidateTemplate(final String templateId) {
+        checkArgumentNotEmpty(templateId);
+        if (templateCache == null) {
+            logger.warn("Unable to invalidate the template {} - the template cache is disabled!", templateId);
+            return;
+        }
+        final Set<String> templateIds = dependencyGraph
+                .getDependents(templateId);
+        templateCache.invalidate(new ComputingCache.KeyPredicate<String>() {
+            @Override
+            public boolean apply(String key) {
+                return templateIds.contains(key);
+            }
+        });
+        sourceCache.invalidate(new ComputingCache.KeyPredicate<String>() {
+            @Override
+            public boolean apply(String key) {
+                return templateId.equals(key);
+            }
+        });
+        logger.debug("Template {} invalidated [dependent templates: {}]",
+                templateId, templateIds.size() - 1);
+    }
+
+    public void reloadTemplate(final String templateId) {
+        checkArgumentNotEmpty(templateId);
+        if (templateCache == null) {
+            logger.warn("Unable to reload the template {} - the template cache is disabled!", templateId);
+            return;
+        }
+        Mustache reloaded = locateAndParse(templateId);
+        if (reloaded == null) {
+            invalidateTemplate(templateId);
+            return;
+        }
+        // Compile all the templates first so that a compilation failure does
+        // not leave the cache in an inconsistent state
+        Map<String, Mustache> templates = new LinkedHashMap<String, Mustache>();
+        templates.put(templateId, reloaded);
+        for (String dependentId : dependencyGraph.getDependents(templateId)) {
+            if (!templateId.equals(dependentId)
+                    && templateCache.getIfPresent(dependentId) != null) {
+                Mustache dependent = locateAndParse(dependentId);
+                if (dependent != null) {
+                    templates.put(dependentId, dependent);
+                }
+            }
+        }
+        if (templateCache instanceof WritableComputingCache) {
+            WritableComputingCache<String, Optional<Mustache>> writableCache =
+                    (WritableComputingCache<String, Optional<Mustache>>) templateCache;
+            // The reloaded template goes first - the dependents look it up
+            // when rendered for the first time
+            for (Entry<String, Mustache> entry : templates.entrySet()) {
+                if (entry.getValue() instanceof Template) {
+                    dependencyGraph.add((Template) entry.getValue());
+                }
+                writableCache.put(entry.getKey(),
+                        Optional.of(entry.getValue()));
+            }
+        } else {
+            // The cache does not support replacing - the templates are
+            // compiled again once invalidated
+            final Set<String> reloadedIds = templates.keySet();
+            templateCache.invalidate(new ComputingCache.KeyPredicate<String>() {
+                @Override
+                public boolean apply(String key) {
+                    return reloadedIds.contains(key);
+                }
+            });
+            for (String reloadedId : reloadedIds) {
+                templateCache.get(reloadedId);
+            }
+        }
+        sourceCache.invalidate(new ComputingCache.KeyPredicate<String>() {
+            @Override
+            public boolean apply(String key) {
+                return templateId.equals(key);
+            }
+        });
+        logger.debug("Template {} reloaded [dependent templates: {}]",
+                templateId, templates.size() - 1);
     }
 
     private ComputingCache<String, Optional<Mustache>> buildTemplateCache() {
@@ -143,7 +250,11 @@ class DefaultMustacheEngine implements MustacheEngine {
                 new ComputingCache.Function<String, Optional<Mustache>>() {
                     @Override
                     public Optional<Mustache> compute(String key) {
-                        return Optional.fromNullable(locateAndParse(key));
+                        Mustache mustache = locateAndParse(key);
+                        if (mustache instanceof Template) {
+                            dependencyGraph.add((Template) mustache);
+                        }
+                        return Optional.fromNullable(mustache);
                     }
                 }, new ComputingCache.Listener<String>() {
                     @Override
@@ -203,16 +314,115 @@ class DefaultMustacheEngine implements MustacheEngine {
             templateNames.addAll(locator.getAllIdentifiers());
         }
 
-        for (String templateName : templateNames) {
-            getTemplateFromCache(templateName);
+        String storeFile = configuration
+                .getStringPropertyValue(EngineConfigurationKey.PRECOMPILATION_STORE_FILE);
+        if (!storeFile.isEmpty()) {
+            precompilationStore = new PrecompilationStore(new File(storeFile),
+                    this);
+        }
+
+        try {
+            ExecutorService executor = configuration.geExecutorService();
+
+            if (executor != null
+                    && templateNames.size() > 1
+                    && configuration
+                            .getBooleanPropertyValue(EngineConfigurationKey.PARALLEL_PRECOMPILATION_ENABLED)) {
+                precompileTemplates(templateNames, executor);
+            } else {
+                for (String templateName : templateNames) {
+                    getTemplateFromCache(templateName);
+                }
+            }
+            if (precompilationStore != null) {
+                precompilationStore.save();
+            }
+        } finally {
+            precompilationStore = null;
         }
     }
 
+    /**
+     * Compile the templates in parallel. The template cache guarantees that
+     * each template is compiled only once even if it's requested concurrently.
+     *
+     * @param templateNames
+     * @param executor
+     * @throws MustacheException
+     *             If any of the templates cannot be compiled - the message
+     *             contains all the failures
+     */
+    private void precompileTemplates(Set<String> templateNames,
+            ExecutorService executor) {
+
+        long start = System.currentTimeMillis();
+        Map<String, FutureTask<Mustache>> tasks = new LinkedHashMap<String, FutureTask<Mustache>>();
+
+        for (final String templateName : templateNames) {
+            FutureTask<Mustache> task = new FutureTask<Mustache>(
+                    new Callable<Mustache>() {
+                        @Override
+                        public Mustache call() throws Exception {
+                            return getTemplateFromCache(templateName);
+                        }
+                    });
+            tasks.put(templateName, task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Compile in the current thread
+                task.run();
+            }
+        }
+
+        Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+
+        for (Entry<String, FutureTask<Mustache>> entry : tasks.entrySet()) {
+            try {
+                entry.getValue().get();
+            } catch (ExecutionException e) {
+                failures.put(entry.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MustacheException(
+                        MustacheProblem.TEMPLATE_LOADING_ERROR, e);
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            StringBuilder report = new StringBuilder();
+            for (Entry<String, Throwable> entry : failures.entrySet()) {
+                report.append("\n\t");
+                report.append(entry.getKey());
+                report.append(": ");
+                report.append(entry.getValue());
+            }
+            MustacheException exception = new MustacheException(
+                    MustacheProblem.TEMPLATE_LOADING_ERROR,
+                    "Unable to precompile %s of %s templates:%s",
+                    failures.size(), templateNames.size(), report);
+            for (Throwable failure : failures.values()) {
+                exception.addSuppressed(failure);
+            }
+            throw exception;
+        }
+        logger.info("{} templates precompiled in parallel in {} ms",
+                templateNames.size(), System.currentTimeMillis() - start);
+    }
+
     private Mustache parse(String templateId, Reader reader) {
-        ParsingHandler handler = parsingHandlerFactory.createParsingHandler();
         reader = notifyListenersBeforeParsing(templateId, reader);
-        parserFactory.createParser(this).parse(templateId, reader, handler);
-        Mustache mustache = handler.getCompiledTemplate();
+        PrecompilationStore store = precompilationStore;
+        Mustache mustache;
+        if (store != null) {
+            mustache = store.compile(templateId, reader,
+                    parserFactory.createParser(this));
+        } else {
+            ParsingHandler handler = parsingHandlerFactory
+                    .createParsingHandler();
+            parserFactory.createParser(this).parse(templateId, reader, handler);
+            mustache = handler.getCompiledTemplate();
+        }
         notifyListenersAfterCompilation(mustache);
         return mustache;
     }
@@ -255,6 +465,10 @@ class DefaultMustacheEngine implements MustacheEngine {
             if (reader == null) {
                 return null;
             }
+            if (reader instanceof CharBufferReader) {
+                // Avoid intermediate copies
+                return ((CharBufferReader) reader).readAll().toString();
+            }
             return CharStreams.toString(reader);
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
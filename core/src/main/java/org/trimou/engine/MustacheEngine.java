@@ -83,4 +83,37 @@ public interface MustacheEngine {
      */
     public void invalidateTemplateCache();
 
+    /**
+     * Invalidate the given template and all the templates which reference
+     * the given template via partial or extend tags, either directly or
+     * transitively. The cached source of the given template is invalidated as
+     * well. The invalidated templates are compiled again the next time they
+     * are requested.
+     *
+     * @param templateId
+     *            The template identifier
+     * @since 1.8.1
+     */
+    public void invalidateTemplate(String templateId);
+
+    /**
+     * Compile the given template and all the cached templates which reference
+     * the given template via partial or extend tags again, and replace them in
+     * the template cache. Unlike {@link #invalidateTemplate(String)} the
+     * current templates are available until replaced, i.e. the rendering never
+     * waits for the compilation. If the given template cannot be located
+     * anymore, the template is invalidated. If the template cache does not
+     * implement {@link org.trimou.engine.cache.WritableComputingCache} the
+     * compiled templates are invalidated and compiled again instead.
+     *
+     * @param templateId
+     *            The template identifier
+     * @throws org.trimou.exception.MustacheException
+     *             If any of the templates cannot be compiled - in this case no
+     *             template is replaced
+     * @see org.trimou.engine.locator.WatchingFileSystemTemplateLocator
+     * @since 1.8.1
+     */
+    public void reloadTemplate(String templateId);
+
 }
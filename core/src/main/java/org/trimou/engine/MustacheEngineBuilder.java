@@ -137,6 +137,12 @@ public final class MustacheEngineBuilder implements
         for (EngineBuiltCallback callback : engineReadyCallbacks) {
             callback.engineBuilt(engine);
         }
+        for (TemplateLocator locator : templateLocators) {
+            if (locator instanceof EngineBuiltCallback
+                    && !engineReadyCallbacks.contains(locator)) {
+                ((EngineBuiltCallback) locator).engineBuilt(engine);
+            }
+        }
 
         String version = null;
         String timestamp = null;
@@ -284,7 +290,8 @@ public final class MustacheEngineBuilder implements
 
     /**
      * Callback is useful to configure a component instantiated before the
-     * engine is built.
+     * engine is built. Note that template locators implementing
+     * {@link EngineBuiltCallback} are notified automatically.
      *
      * @param callback
      * @return self
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.trimou.engine.parser.Template;
+import org.trimou.engine.segment.ContainerSegment;
+import org.trimou.engine.segment.Segment;
+import org.trimou.engine.segment.SegmentType;
+
+/**
+ * Keeps track of the templates referenced by partial and extend tags of the
+ * cached templates. Note that the partial and extend segments may cache the
+ * referenced template, so that a template must be invalidated together with
+ * all the templates which depend on it. This construct is thread-safe.
+ *
+ * <p>
+ * The edges are only removed if the whole template cache is invalidated. An
+ * outdated edge results in an unnecessary invalidation at worst.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @since 1.8.1
+ */
+final class TemplateDependencyGraph {
+
+    /**
+     * Template id -> ids of the templates which reference the template
+     */
+    private final ConcurrentMap<String, Set<String>> dependents;
+
+    TemplateDependencyGraph() {
+        this.dependents = new ConcurrentHashMap<String, Set<String>>();
+    }
+
+    /**
+     * Add the edges for all the partial and extend tags of the given
+     * template.
+     *
+     * @param template
+     */
+    void add(Template template) {
+        add(template.getName(), template.getRootSegment());
+    }
+
+    /**
+     *
+     * @param templateId
+     * @return the given id and the ids of all the templates which transitively
+     *         depend on the given template
+     */
+    Set<String> getDependents(String templateId) {
+        Set<String> ids = new HashSet<String>();
+        Deque<String> queue = new ArrayDeque<String>();
+        queue.add(templateId);
+        while (!queue.isEmpty()) {
+            String id = queue.removeFirst();
+            if (ids.add(id)) {
+                Set<String> direct = dependents.get(id);
+                if (direct != null) {
+                    queue.addAll(direct);
+                }
+            }
+        }
+        return ids;
+    }
+
+    void clear() {
+        dependents.clear();
+    }
+
+    private void add(String templateId, ContainerSegment container) {
+        for (Segment segment : container) {
+            if (SegmentType.PARTIAL.equals(segment.getType())
+                    || SegmentType.EXTEND.equals(segment.getType())) {
+                getDirectDependents(segment.getText()).add(templateId);
+            }
+            if (segment instanceof ContainerSegment) {
+                add(templateId, (ContainerSegment) segment);
+            }
+        }
+    }
+
+    private Set<String> getDirectDependents(String templateId) {
+        Set<String> direct = dependents.get(templateId);
+        if (direct == null) {
+            direct = Collections
+                    .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            Set<String> previous = dependents.putIfAbsent(templateId, direct);
+            if (previous != null) {
+                direct = previous;
+            }
+        }
+        return direct;
+    }
+
+}
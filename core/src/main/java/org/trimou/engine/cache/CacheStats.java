@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.cache;
+
+/**
+ * An immutable snapshot of {@link ComputingCache} statistics. All the values
+ * are cumulative, i.e. they're not reset when the cache is cleared.
+ *
+ * @author Martin Kouba
+ * @see StatsRecordingComputingCache#stats()
+ * @since 1.8.1
+ */
+public final class CacheStats {
+
+    /**
+     * May be used by implementations which do not record statistics
+     */
+    public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long loadSuccessCount;
+
+    private final long loadExceptionCount;
+
+    private final long totalLoadTime;
+
+    private final long evictionCount;
+
+    /**
+     *
+     * @param hitCount
+     * @param missCount
+     * @param loadSuccessCount
+     * @param loadExceptionCount
+     * @param totalLoadTime
+     *            In nanoseconds
+     * @param evictionCount
+     */
+    public CacheStats(long hitCount, long missCount, long loadSuccessCount,
+            long loadExceptionCount, long totalLoadTime, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadExceptionCount = loadExceptionCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     *
+     * @return the number of lookups which found a cached value
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     *
+     * @return the number of lookups which did not find a cached value
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     *
+     * @return the total number of lookups
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     *
+     * @return the ratio of hits to all lookups, <code>1.0</code> if there was
+     *         no lookup yet
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     *
+     * @return the number of successfully computed values
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     *
+     * @return the number of computations which threw an exception
+     */
+    public long getLoadExceptionCount() {
+        return loadExceptionCount;
+    }
+
+    /**
+     *
+     * @return the total time spent computing values, in nanoseconds
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     *
+     * @return the average time spent computing a value, in nanoseconds
+     */
+    public double getAverageLoadPenalty() {
+        long loadCount = loadSuccessCount + loadExceptionCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     *
+     * @return the number of entries removed due to the max size limit or
+     *         expiration (explicit invalidations are not included)
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public String toString() {
+        return String
+                .format("CacheStats [hits: %s, misses: %s, hitRate: %.2f, loadSuccess: %s, loadException: %s, averageLoadPenalty: %.0f ns, evictions: %s]",
+                        hitCount, missCount, getHitRate(), loadSuccessCount,
+                        loadExceptionCount, getAverageLoadPenalty(),
+                        evictionCount);
+    }
+
+}
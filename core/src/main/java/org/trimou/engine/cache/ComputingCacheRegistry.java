@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.trimou.engine.cache.ComputingCache.Function;
+import org.trimou.engine.cache.ComputingCache.Listener;
+import org.trimou.engine.config.Configuration;
+import org.trimou.engine.config.ConfigurationKey;
+import org.trimou.util.Checker;
+
+/**
+ * Keeps track of all the computing caches created for a single engine. The
+ * caches are grouped by the consumer id - see also
+ * {@link ComputingCacheFactory#create(String, Function, Long, Long, Listener)}
+ * . Note that a single consumer may create multiple caches, e.g. the engine
+ * itself creates the template cache first and then the template source cache.
+ *
+ * <p>
+ * The registry only holds weak references, i.e. it does not prevent a cache
+ * from being garbage collected. The references to collected caches are
+ * removed once enqueued by the garbage collector, so that registering a new
+ * cache does not need to scan all the caches already registered.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see Configuration#getComputingCacheRegistry()
+ * @since 1.8.1
+ */
+public final class ComputingCacheRegistry {
+
+    private static final Comparator<CacheReference> CREATION_ORDER = new Comparator<CacheReference>() {
+        @Override
+        public int compare(CacheReference ref1, CacheReference ref2) {
+            return Long.compare(ref1.sequence, ref2.sequence);
+        }
+    };
+
+    private final ConcurrentMap<String, Set<CacheReference>> caches;
+
+    private final ReferenceQueue<ComputingCache<?, ?>> queue;
+
+    private final AtomicLong sequence;
+
+    public ComputingCacheRegistry() {
+        this.caches = new ConcurrentHashMap<String, Set<CacheReference>>();
+        this.queue = new ReferenceQueue<ComputingCache<?, ?>>();
+        this.sequence = new AtomicLong();
+    }
+
+    /**
+     *
+     * @return the set of consumer ids for which at least one cache was created
+     */
+    public Set<String> getConsumerIds() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     *
+     * @param consumerId
+     * @return the list of caches created for the given consumer, in the order
+     *         they were created
+     */
+    public List<ComputingCache<?, ?>> getCaches(String consumerId) {
+        expungeStaleReferences();
+        Set<CacheReference> references = caches.get(consumerId);
+        if (references == null) {
+            return Collections.emptyList();
+        }
+        List<CacheReference> sorted = new ArrayList<CacheReference>(
+                references);
+        Collections.sort(sorted, CREATION_ORDER);
+        List<ComputingCache<?, ?>> result = new ArrayList<ComputingCache<?, ?>>(
+                sorted.size());
+        for (CacheReference reference : sorted) {
+            ComputingCache<?, ?> cache = reference.get();
+            if (cache != null) {
+                result.add(cache);
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @return all the caches grouped by consumer id
+     */
+    public Map<String, List<ComputingCache<?, ?>>> getAllCaches() {
+        Map<String, List<ComputingCache<?, ?>>> result = new LinkedHashMap<String, List<ComputingCache<?, ?>>>();
+        for (String consumerId : caches.keySet()) {
+            result.put(consumerId, getCaches(consumerId));
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param consumerId
+     * @return the statistics of all the caches created for the given
+     *         consumer, {@link CacheStats#EMPTY} for a cache which does not
+     *         record statistics
+     * @see StatsRecordingComputingCache
+     */
+    public List<CacheStats> getStats(String consumerId) {
+        List<ComputingCache<?, ?>> consumerCaches = getCaches(consumerId);
+        List<CacheStats> stats = new ArrayList<CacheStats>(
+                consumerCaches.size());
+        for (ComputingCache<?, ?> cache : consumerCaches) {
+            if (cache instanceof StatsRecordingComputingCache) {
+                stats.add(((StatsRecordingComputingCache<?, ?>) cache).stats());
+            } else {
+                stats.add(CacheStats.EMPTY);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     *
+     * @param factory
+     * @return a factory which registers all the created caches
+     */
+    public ComputingCacheFactory decorate(ComputingCacheFactory factory) {
+        return new RegisteringComputingCacheFactory(factory);
+    }
+
+    void register(String consumerId, ComputingCache<?, ?> cache) {
+        expungeStaleReferences();
+        Set<CacheReference> references = caches.get(consumerId);
+        if (references == null) {
+            references = Collections
+                    .newSetFromMap(new ConcurrentHashMap<CacheReference, Boolean>());
+            Set<CacheReference> previous = caches.putIfAbsent(consumerId,
+                    references);
+            if (previous != null) {
+                references = previous;
+            }
+        }
+        references.add(new CacheReference(consumerId, cache, queue,
+                sequence.incrementAndGet()));
+    }
+
+    /**
+     * Remove the references to caches already garbage collected.
+     */
+    private void expungeStaleReferences() {
+        for (Reference<? extends ComputingCache<?, ?>> reference = queue
+                .poll(); reference != null; reference = queue.poll()) {
+            CacheReference cacheReference = (CacheReference) reference;
+            Set<CacheReference> references = caches
+                    .get(cacheReference.consumerId);
+            if (references != null) {
+                references.remove(cacheReference);
+            }
+        }
+    }
+
+    private static class CacheReference extends
+            WeakReference<ComputingCache<?, ?>> {
+
+        private final String consumerId;
+
+        private final long sequence;
+
+        CacheReference(String consumerId, ComputingCache<?, ?> cache,
+                ReferenceQueue<ComputingCache<?, ?>> queue, long sequence) {
+            super(cache, queue);
+            this.consumerId = consumerId;
+            this.sequence = sequence;
+        }
+
+    }
+
+    private class RegisteringComputingCacheFactory implements
+            ComputingCacheFactory {
+
+        private final ComputingCacheFactory delegate;
+
+        RegisteringComputingCacheFactory(ComputingCacheFactory delegate) {
+            Checker.checkArgumentNotNull(delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void init(Configuration configuration) {
+            delegate.init(configuration);
+        }
+
+        @Override
+        public Set<ConfigurationKey> getConfigurationKeys() {
+            return delegate.getConfigurationKeys();
+        }
+
+        @Override
+        public <K, V> ComputingCache<K, V> create(String consumerId,
+                Function<K, V> computingFunction, Long expirationTimeout,
+                Long maxSize, Listener<K> listener) {
+            ComputingCache<K, V> cache = delegate.create(consumerId,
+                    computingFunction, expirationTimeout, maxSize, listener);
+            register(consumerId, cache);
+            return cache;
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+
+    }
+
+}
@@ -45,7 +45,8 @@ public class DefaultComputingCacheFactory extends AbstractConfigurationAware
             final Long expirationTimeout, final Long maxSize,
             final Listener<K> listener) {
 
-        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .recordStats();
 
         if (expirationTimeout != null && expirationTimeout > 0) {
             builder.expireAfterWrite(expirationTimeout, TimeUnit.MILLISECONDS);
@@ -67,7 +68,7 @@ public class DefaultComputingCacheFactory extends AbstractConfigurationAware
     }
 
     protected static class LoadingCacheAdapter<K, V> implements
-            ComputingCache<K, V> {
+            WritableComputingCache<K, V>, StatsRecordingComputingCache<K, V> {
 
         private final LoadingCache<K, V> cache;
 
@@ -85,6 +86,11 @@ public class DefaultComputingCacheFactory extends AbstractConfigurationAware
             return cache.getIfPresent(key);
         }
 
+        @Override
+        public void put(K key, V value) {
+            cache.put(key, value);
+        }
+
         @Override
         public void clear() {
             cache.invalidateAll();
@@ -111,6 +117,14 @@ public class DefaultComputingCacheFactory extends AbstractConfigurationAware
             return ImmutableMap.copyOf(cache.asMap());
         }
 
+        @Override
+        public CacheStats stats() {
+            com.google.common.cache.CacheStats stats = cache.stats();
+            return new CacheStats(stats.hitCount(), stats.missCount(),
+                    stats.loadSuccessCount(), stats.loadExceptionCount(),
+                    stats.totalLoadTime(), stats.evictionCount());
+        }
+
     }
 
     protected static class CacheLoaderAdapter<K, V> extends CacheLoader<K, V> {
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.cache;
+
+/**
+ * A computing cache which records statistics. This is an optional capability
+ * - {@link CacheStats#EMPTY} is reported for a cache which does not implement
+ * this interface.
+ *
+ * @author Martin Kouba
+ *
+ * @param <K>
+ *            The key
+ * @param <V>
+ *            The value
+ * @see ComputingCacheRegistry#getStats(String)
+ * @since 1.8.1
+ */
+public interface StatsRecordingComputingCache<K, V> extends
+        ComputingCache<K, V> {
+
+    /**
+     *
+     * @return the current snapshot of statistics
+     */
+    CacheStats stats();
+
+}
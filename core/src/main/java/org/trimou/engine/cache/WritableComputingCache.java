@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.cache;
+
+/**
+ * A computing cache which allows to replace a value directly. This is an
+ * optional capability - the engine falls back to
+ * {@link #invalidate(ComputingCache.KeyPredicate)} followed by
+ * {@link #get(Object)} if the cache does not implement this interface.
+ *
+ * @author Martin Kouba
+ *
+ * @param <K>
+ *            The key
+ * @param <V>
+ *            The value
+ * @since 1.8.1
+ */
+public interface WritableComputingCache<K, V> extends ComputingCache<K, V> {
+
+    /**
+     * Associate the value with the key, replacing the current value if any.
+     * Unlike {@link #invalidate(ComputingCache.KeyPredicate)} followed by
+     * {@link #get(Object)}, the current value is available until replaced.
+     *
+     * @param key
+     * @param value
+     */
+    void put(K key, V value);
+
+}
@@ -22,6 +22,7 @@ import java.util.concurrent.ExecutorService;
 import org.trimou.Mustache;
 import org.trimou.annotations.Internal;
 import org.trimou.engine.cache.ComputingCacheFactory;
+import org.trimou.engine.cache.ComputingCacheRegistry;
 import org.trimou.engine.id.IdentifierGenerator;
 import org.trimou.engine.interpolation.KeySplitter;
 import org.trimou.engine.interpolation.LiteralSupport;
@@ -132,6 +133,15 @@ public interface Configuration {
      */
     public ComputingCacheFactory getComputingCacheFactory();
 
+    /**
+     *
+     * @return the registry of all computing caches created by the computing
+     *         cache factory
+     * @see #getComputingCacheFactory()
+     * @since 1.8.1
+     */
+    public ComputingCacheRegistry getComputingCacheRegistry();
+
     /**
      *
      * @return the sequence generator
@@ -34,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.trimou.engine.MustacheEngineBuilder;
 import org.trimou.engine.cache.ComputingCacheFactory;
+import org.trimou.engine.cache.ComputingCacheRegistry;
 import org.trimou.engine.cache.DefaultComputingCacheFactory;
 import org.trimou.engine.id.IdentifierGenerator;
 import org.trimou.engine.id.SequenceIdentifierGenerator;
@@ -56,6 +57,7 @@ import org.trimou.engine.validation.Validateable;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
 import org.trimou.handlebars.Helper;
+import org.trimou.util.OutputStreamAppendable;
 import org.trimou.util.Strings;
 
 import com.google.common.collect.ImmutableList;
@@ -94,6 +96,10 @@ class DefaultConfiguration implements Configuration {
 
     private final ComputingCacheFactory computingCacheFactory;
 
+    private final ComputingCacheRegistry computingCacheRegistry;
+
+    private final ComputingCacheFactory registeringComputingCacheFactory;
+
     private final IdentifierGenerator identifierGenerator;
 
     private final ExecutorService executorService;
@@ -142,6 +148,9 @@ class DefaultConfiguration implements Configuration {
         } else {
             this.computingCacheFactory = new DefaultComputingCacheFactory();
         }
+        this.computingCacheRegistry = new ComputingCacheRegistry();
+        this.registeringComputingCacheFactory = computingCacheRegistry
+                .decorate(computingCacheFactory);
         if (builder.getIdentifierGenerator() != null) {
             this.identifierGenerator = builder.getIdentifierGenerator();
         } else {
@@ -172,6 +181,7 @@ class DefaultConfiguration implements Configuration {
 
         this.properties = initializeProperties(builder,
                 getConfigurationKeysToProcess(components));
+        validateProperties();
 
         if (getBooleanPropertyValue(EngineConfigurationKey.NO_VALUE_INDICATES_PROBLEM)) {
             logger.warn(
@@ -200,6 +210,17 @@ class DefaultConfiguration implements Configuration {
         this.mustacheListeners = mustacheListeners.isEmpty() ? null
                 : mustacheListeners;
         this.executorService = builder.getExecutorService();
+
+        if (executorService == null) {
+            for (EngineConfigurationKey key : new EngineConfigurationKey[] {
+                    EngineConfigurationKey.PARALLEL_ITERATION_ENABLED,
+                    EngineConfigurationKey.PARALLEL_PRECOMPILATION_ENABLED }) {
+                if (getBooleanPropertyValue(key)) {
+                    logger.warn("{}.{} is ignored - no ExecutorService is set",
+                            EngineConfigurationKey.class.getSimpleName(), key);
+                }
+            }
+        }
     }
 
     @Override
@@ -332,7 +353,12 @@ class DefaultConfiguration implements Configuration {
 
     @Override
     public ComputingCacheFactory getComputingCacheFactory() {
-        return computingCacheFactory;
+        return registeringComputingCacheFactory;
+    }
+
+    @Override
+    public ComputingCacheRegistry getComputingCacheRegistry() {
+        return computingCacheRegistry;
     }
 
     @Override
@@ -420,6 +446,18 @@ class DefaultConfiguration implements Configuration {
         return builder.build();
     }
 
+    private void validateProperties() {
+        int outputBufferSize = getIntegerPropertyValue(
+                EngineConfigurationKey.OUTPUT_BUFFER_SIZE);
+        if (outputBufferSize < OutputStreamAppendable.MIN_BUFFER_SIZE) {
+            throw new MustacheException(
+                    MustacheProblem.CONFIG_PROPERTY_INVALID_VALUE,
+                    "%s must be at least %s [value: %s]",
+                    EngineConfigurationKey.OUTPUT_BUFFER_SIZE,
+                    OutputStreamAppendable.MIN_BUFFER_SIZE, outputBufferSize);
+        }
+    }
+
     private Set<ConfigurationKey> getConfigurationKeysToProcess(
             Set<ConfigurationAware> components) {
         Set<ConfigurationKey> keys = new HashSet<ConfigurationKey>();
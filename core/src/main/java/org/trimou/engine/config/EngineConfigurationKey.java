@@ -124,7 +124,88 @@ public enum EngineConfigurationKey implements ConfigurationKey {
      * If set to <code>true</code> the evaluation of simple variables, e.g.
      * <code>{{.}}</code> or <code>{{foo}}</code>, is optimized.
      */
-    RESOLVER_HINTS_ENABLED(true), ;
+    RESOLVER_HINTS_ENABLED(true),
+    /**
+     * If set to <code>true</code> a section iterating over an {@link Iterable}
+     * or an array with more than {@link #PARALLEL_ITERATION_CHUNK_SIZE}
+     * elements is rendered in parallel. The elements are split into chunks,
+     * each chunk is rendered into a separate buffer by means of the
+     * {@link java.util.concurrent.ExecutorService} and finally the buffers are
+     * appended in order.
+     *
+     * Note that the resolvers, helpers and lambdas involved must be
+     * thread-safe and must not rely on thread-bound state.
+     *
+     * @see org.trimou.engine.MustacheEngineBuilder#setExecutorService(java.util.concurrent.ExecutorService)
+     * @see org.trimou.handlebars.EachHelper
+     */
+    PARALLEL_ITERATION_ENABLED(false),
+    /**
+     * The number of elements rendered in a single task if parallel iteration
+     * is used.
+     *
+     * @see #PARALLEL_ITERATION_ENABLED
+     */
+    PARALLEL_ITERATION_CHUNK_SIZE(1000),
+    /**
+     * If set to <code>true</code> and {@link #PRECOMPILE_ALL_TEMPLATES} is
+     * also enabled, the templates are compiled in parallel by means of the
+     * {@link java.util.concurrent.ExecutorService}. All the compilation
+     * failures are reported at once.
+     *
+     * Note that the template locators and listeners involved must be
+     * thread-safe.
+     *
+     * @see org.trimou.engine.MustacheEngineBuilder#setExecutorService(java.util.concurrent.ExecutorService)
+     */
+    PARALLEL_PRECOMPILATION_ENABLED(false),
+    /**
+     * The maximum number of compiled templates for interpolated lambda return
+     * values cached per tag. Zero and negative values mean the return value
+     * is compiled on every rendering.
+     *
+     * @see org.trimou.lambda.Lambda#isReturnValueInterpolated()
+     */
+    LAMBDA_TEMPLATE_CACHE_MAX_SIZE(100l),
+    /**
+     * The maximum number of keys evaluated via
+     * {@link org.trimou.handlebars.Options#getValue(String)} cached per helper
+     * tag. A cached key is only split once and makes use of resolver hints.
+     * Zero and negative values disable the cache.
+     *
+     * @see org.trimou.handlebars.EvalHelper
+     */
+    HELPER_KEY_CACHE_MAX_SIZE(100l),
+    /**
+     * The size of the buffer (in bytes) used when rendering a template to an
+     * {@link java.io.OutputStream}. Must be at least 16. The buffered bytes
+     * are written to the stream whenever the buffer is full. Use the
+     * {@link org.trimou.handlebars.FlushHelper} to send the output rendered
+     * so far to the client explicitly.
+     *
+     * @see org.trimou.Mustache#render(java.io.OutputStream,
+     *      java.nio.charset.Charset, Object)
+     */
+    OUTPUT_BUFFER_SIZE(8192),
+    /**
+     * If set to <code>true</code> adjacent text and line separator segments
+     * are merged into a single text segment during compilation, i.e. a run of
+     * static content is written at once. Note that
+     * {@link org.trimou.engine.segment.Segment#getOrigin()} of a merged
+     * segment only displays the info of the first original segment.
+     */
+    MERGE_TEXT_SEGMENTS(true),
+    /**
+     * The path of a file used to store the parse results if
+     * {@link #PRECOMPILE_ALL_TEMPLATES} is enabled. A template whose source
+     * did not change since the last precompilation is compiled from the
+     * stored segment tree, i.e. the parsing is skipped. The file is written
+     * once the templates are precompiled. An empty value means that no store
+     * is used.
+     *
+     * @see org.trimou.engine.parser.PrecompilationStore
+     */
+    PRECOMPILATION_STORE_FILE(""), ;
 
     private Object defaultValue;
 
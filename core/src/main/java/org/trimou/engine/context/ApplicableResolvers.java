@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.context;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.trimou.engine.resolver.ResolutionContext;
+import org.trimou.engine.resolver.Resolver;
+import org.trimou.engine.resolver.TypeAwareResolver;
+
+/**
+ * A dispatch table of the resolvers applicable to a specific runtime class of
+ * the context object. The resolvers which do not implement
+ * {@link TypeAwareResolver} are always applicable. The tables are computed
+ * lazily and associated with the class by means of {@link ClassValue}, i.e.
+ * there is no limit on the number of classes and the tables do not prevent
+ * the classes from being unloaded.
+ *
+ * <p>
+ * This construct is thread-safe.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see TypeAwareResolver
+ */
+final class ApplicableResolvers {
+
+    private final Resolver[] resolvers;
+
+    private final boolean[] typeAware;
+
+    /**
+     * The resolvers applicable if there is no context object
+     */
+    private final Resolver[] noContextObjectResolvers;
+
+    private final ClassValue<Resolver[]> applicableResolvers;
+
+    private ApplicableResolvers(Resolver[] resolvers) {
+        this.resolvers = resolvers;
+        this.typeAware = new boolean[resolvers.length];
+        for (int i = 0; i < resolvers.length; i++) {
+            typeAware[i] = isTypeAware(resolvers[i]);
+        }
+        this.noContextObjectResolvers = filter(null);
+        this.applicableResolvers = new ClassValue<Resolver[]>() {
+            @Override
+            protected Resolver[] computeValue(Class<?> contextObjectClass) {
+                return filter(contextObjectClass);
+            }
+        };
+    }
+
+    /**
+     *
+     * @param resolvers
+     * @return the dispatch table or <code>null</code> if no resolver is
+     *         type-aware
+     */
+    static ApplicableResolvers from(Resolver[] resolvers) {
+        for (Resolver resolver : resolvers) {
+            if (isTypeAware(resolver)) {
+                return new ApplicableResolvers(resolvers);
+            }
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @param contextObject
+     * @return the resolvers applicable to the given context object
+     */
+    Resolver[] get(Object contextObject) {
+        if (contextObject == null) {
+            return noContextObjectResolvers;
+        }
+        return applicableResolvers.get(contextObject.getClass());
+    }
+
+    private Resolver[] filter(Class<?> contextObjectClass) {
+        List<Resolver> applicable = new ArrayList<Resolver>(resolvers.length);
+        for (int i = 0; i < resolvers.length; i++) {
+            if (!typeAware[i]
+                    || ((TypeAwareResolver) resolvers[i])
+                            .isApplicable(contextObjectClass)) {
+                applicable.add(resolvers[i]);
+            }
+        }
+        return applicable.size() == resolvers.length ? resolvers : applicable
+                .toArray(new Resolver[applicable.size()]);
+    }
+
+    /**
+     *
+     * @param resolver
+     * @return <code>true</code> if the resolver is type-aware and the
+     *         {@link TypeAwareResolver#isApplicable(Class)} is not inherited
+     *         from a superclass of the class declaring
+     *         {@link Resolver#resolve(Object, String, ResolutionContext)}
+     */
+    private static boolean isTypeAware(Resolver resolver) {
+        if (!(resolver instanceof TypeAwareResolver)) {
+            return false;
+        }
+        try {
+            Class<?> resolveDeclaringClass = resolver
+                    .getClass()
+                    .getMethod("resolve", Object.class, String.class,
+                            ResolutionContext.class).getDeclaringClass();
+            Class<?> isApplicableDeclaringClass = resolver.getClass()
+                    .getMethod("isApplicable", Class.class)
+                    .getDeclaringClass();
+            return resolveDeclaringClass
+                    .isAssignableFrom(isApplicableDeclaringClass);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+}
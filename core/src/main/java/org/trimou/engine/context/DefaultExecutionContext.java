@@ -18,7 +18,6 @@ package org.trimou.engine.context;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
 
 import org.trimou.engine.config.Configuration;
 import org.trimou.engine.config.EngineConfigurationKey;
@@ -34,6 +33,14 @@ import org.trimou.exception.MustacheProblem;
 /**
  * A default implementation.
  *
+ * <p>
+ * Each context keeps a shortcut to the closest ancestor with a context object
+ * and to the closest ancestor with a template invocation so that lookups do
+ * not need to walk all the intermediate contexts. The defining sections are
+ * merged into a single map when associated, and inherited by reference
+ * otherwise.
+ * </p>
+ *
  * @author Martin Kouba
  */
 final class DefaultExecutionContext implements ExecutionContext {
@@ -52,6 +59,22 @@ final class DefaultExecutionContext implements ExecutionContext {
 
     protected final Resolver[] resolvers;
 
+    /**
+     * The resolver dispatch table, <code>null</code> if no resolver is
+     * type-aware
+     */
+    private final ApplicableResolvers applicableResolvers;
+
+    /**
+     * The closest ancestor with a non-null context object
+     */
+    private final DefaultExecutionContext contextObjectParent;
+
+    /**
+     * The closest ancestor with a template invocation
+     */
+    private final DefaultExecutionContext templateInvocationParent;
+
     /**
      *
      * @param parent
@@ -61,24 +84,40 @@ final class DefaultExecutionContext implements ExecutionContext {
      * @param templateInvocations
      * @param invocationLimitCounter
      * @param definingSections
+     *            All the defining sections associated with the context, if
+     *            <code>null</code> the parent's sections are used
      * @param resolvers
+     * @param applicableResolvers
      */
     DefaultExecutionContext(DefaultExecutionContext parent,
             Configuration configuration, Object contextObject,
             Template templateInvocation, int invocationLimitCounter,
-            Map<String, Segment> definingSections, Resolver[] resolvers) {
+            Map<String, Segment> definingSections, Resolver[] resolvers,
+            ApplicableResolvers applicableResolvers) {
         this.parent = parent;
         this.configuration = configuration;
         this.contextObject = contextObject;
         this.templateInvocation = templateInvocation;
         this.invocationLimitCounter = invocationLimitCounter;
-        this.definingSections = definingSections;
         this.resolvers = resolvers;
+        this.applicableResolvers = applicableResolvers;
+        if (parent != null) {
+            this.definingSections = definingSections != null ? definingSections
+                    : parent.definingSections;
+            this.contextObjectParent = parent.contextObject != null ? parent
+                    : parent.contextObjectParent;
+            this.templateInvocationParent = parent.templateInvocation != null ? parent
+                    : parent.templateInvocationParent;
+        } else {
+            this.definingSections = definingSections;
+            this.contextObjectParent = null;
+            this.templateInvocationParent = null;
+        }
     }
 
     @Override
     public ValueWrapper getValue(String key, String[] keyParts,
-            AtomicReference<Hint> hintRef) {
+            HintCache hintCache) {
 
         ValueWrapper value = new ValueWrapper(key);
         Object lastValue = null;
@@ -86,21 +125,22 @@ final class DefaultExecutionContext implements ExecutionContext {
         if (keyParts == null || keyParts.length == 0) {
             Iterator<String> parts = configuration.getKeySplitter().split(key);
             lastValue = resolveLeadingContextObject(parts.next(), value,
-                    hintRef);
+                    hintCache);
             if (lastValue == null) {
                 // Leading context object not found - miss
                 return value;
             }
             while (parts.hasNext()) {
                 value.processNextPart();
-                lastValue = resolve(lastValue, parts.next(), value, false);
+                lastValue = resolve(lastValue, parts.next(), value, null);
                 if (lastValue == null) {
                     // Not found - miss
                     return value;
                 }
             }
         } else {
-            lastValue = resolveLeadingContextObject(keyParts[0], value, hintRef);
+            lastValue = resolveLeadingContextObject(keyParts[0], value,
+                    hintCache);
             if (lastValue == null) {
                 // Leading context object not found - miss
                 return value;
@@ -108,7 +148,7 @@ final class DefaultExecutionContext implements ExecutionContext {
             if (keyParts.length > 1) {
                 for (int i = 1; i < keyParts.length; i++) {
                     value.processNextPart();
-                    lastValue = resolve(lastValue, keyParts[i], value, false);
+                    lastValue = resolve(lastValue, keyParts[i], value, null);
                     if (lastValue == null) {
                         // Not found - miss
                         return value;
@@ -131,7 +171,8 @@ final class DefaultExecutionContext implements ExecutionContext {
     @Override
     public ExecutionContext setContextObject(Object object) {
         return new DefaultExecutionContext(this, configuration, object, null,
-                invocationLimitCounter, null, resolvers);
+                invocationLimitCounter, null, resolvers,
+                applicableResolvers);
     }
 
     @Override
@@ -139,10 +180,8 @@ final class DefaultExecutionContext implements ExecutionContext {
         if (contextObject != null) {
             return contextObject;
         }
-        if (parent != null) {
-            return parent.getFirstContextObject();
-        }
-        return null;
+        return contextObjectParent != null ? contextObjectParent.contextObject
+                : null;
     }
 
     @Override
@@ -158,34 +197,31 @@ final class DefaultExecutionContext implements ExecutionContext {
                     invocationLimitCounter, templateInvocation);
         }
         return new DefaultExecutionContext(this, configuration, null, template,
-                invocationLimitCounter - 1, null, resolvers);
+                invocationLimitCounter - 1, null, resolvers,
+                applicableResolvers);
     }
 
     @Override
     public ExecutionContext setDefiningSections(Iterable<Segment> segments) {
-        Map<String, Segment> definingSections = null;
+        Map<String, Segment> merged = null;
         for (Segment segment : segments) {
             if (getDefiningSection(segment.getText()) == null) {
-                if (definingSections == null) {
-                    definingSections = new HashMap<String, Segment>();
+                if (merged == null) {
+                    merged = this.definingSections != null ? new HashMap<String, Segment>(
+                            this.definingSections)
+                            : new HashMap<String, Segment>();
                 }
-                definingSections.put(segment.getText(), segment);
+                merged.put(segment.getText(), segment);
             }
         }
         return new DefaultExecutionContext(this, configuration, null, null,
-                invocationLimitCounter, definingSections, resolvers);
+                invocationLimitCounter, merged, resolvers,
+                applicableResolvers);
     }
 
     @Override
     public Segment getDefiningSection(String name) {
-        Segment section = null;
-        if (definingSections != null) {
-            section = definingSections.get(name);
-        }
-        if (section == null && parent != null) {
-            section = parent.getDefiningSection(name);
-        }
-        return section;
+        return definingSections != null ? definingSections.get(name) : null;
     }
 
     @Override
@@ -195,11 +231,11 @@ final class DefaultExecutionContext implements ExecutionContext {
 
     private int getTemplateInvocations(Template template) {
         int invocations = 0;
-        if (templateInvocation != null && templateInvocation.equals(template)) {
-            invocations++;
-        }
-        if (parent != null) {
-            invocations += parent.getTemplateInvocations(template);
+        for (DefaultExecutionContext context = templateInvocation != null ? this
+                : templateInvocationParent; context != null; context = context.templateInvocationParent) {
+            if (context.templateInvocation.equals(template)) {
+                invocations++;
+            }
         }
         return invocations;
     }
@@ -214,63 +250,83 @@ final class DefaultExecutionContext implements ExecutionContext {
      * @param name
      * @param value
      *            The value wrapper - ResolutionContext
-     * @param hintRef
+     * @param hintCache
      * @return the resolved leading context object
      * @see Hint
      */
     private Object resolveLeadingContextObject(String name, ValueWrapper value,
-            AtomicReference<Hint> hintRef) {
+            HintCache hintCache) {
 
-        Object leading = resolveContextObject(name, value, hintRef);
+        Object leading = resolveContextObject(name, value, hintCache);
 
         if (leading == null) {
             // Leading context object not found - try to resolve context
             // unrelated objects (JNDI lookup, CDI, etc.)
-            Hint hint = hintRef != null ? hintRef.get() : null;
-            if (hint != null) {
-                leading = hint.resolve(null, name, value);
-            }
-            if (leading == null) {
-                leading = resolve(null, name, value, hint == null
-                        && hintRef != null);
-            }
+            leading = resolveWithHint(null, null, name, value, hintCache);
         }
         return leading;
     }
 
     private Object resolveContextObject(String name, ValueWrapper value,
-            AtomicReference<Hint> hintRef) {
+            HintCache hintCache) {
 
-        Object leading = null;
+        for (DefaultExecutionContext context = contextObject != null ? this
+                : contextObjectParent; context != null; context = context.contextObjectParent) {
+            Object leading = resolveWithHint(context.contextObject,
+                    context.contextObject.getClass(), name, value, hintCache);
+            if (leading != null) {
+                return leading;
+            }
+        }
+        return null;
+    }
 
-        if (contextObject != null) {
-            Hint hint = hintRef != null ? hintRef.get() : null;
+    private Object resolveWithHint(Object contextObject,
+            Class<?> contextObjectClass, String name, ValueWrapper value,
+            HintCache hintCache) {
+        Object resolved = null;
+        if (hintCache != null) {
+            Hint hint = hintCache.get(contextObjectClass);
             if (hint != null) {
-                leading = hint.resolve(contextObject, name, value);
-            }
-            if (leading == null) {
-                leading = resolve(contextObject, name, value, hint == null
-                        && hintRef != null);
+                resolved = hint.resolve(contextObject, name, value);
             }
         }
-        if (leading == null && parent != null) {
-            leading = parent.resolveContextObject(name, value, hintRef);
+        if (resolved == null) {
+            // Only create a new hint if there is none for the given class and
+            // the cache is not megamorphic
+            resolved = resolve(contextObject, name, value, hintCache != null
+                    && hintCache.accepts(contextObjectClass) ? hintCache : null);
         }
-        return leading;
+        return resolved;
     }
 
+    /**
+     *
+     * @param contextObject
+     * @param name
+     * @param value
+     * @param hintCache
+     *            If not null, a new hint is created and put in the cache if
+     *            possible
+     * @return the resolved object or <code>null</code>
+     */
     private Object resolve(Object contextObject, String name,
-            ValueWrapper value, boolean createHint) {
+            ValueWrapper value, HintCache hintCache) {
         Object resolved = null;
+        Resolver[] resolvers = applicableResolvers != null ? applicableResolvers
+                .get(contextObject) : this.resolvers;
         for (int i = 0; i < resolvers.length; i++) {
             resolved = resolvers[i].resolve(contextObject, name, value);
             if (resolved != null) {
-                if (createHint) {
+                if (hintCache != null) {
                     // Initialize a new hint if possible
                     Resolver resolver = resolvers[i];
                     if (resolver instanceof EnhancedResolver) {
-                        value.setHint(((EnhancedResolver) resolver).createHint(
-                                contextObject, name, value));
+                        Hint hint = ((EnhancedResolver) resolver).createHint(
+                                contextObject, name, value);
+                        value.setHint(hint);
+                        hintCache.put(contextObject != null ? contextObject
+                                .getClass() : null, hint);
                     }
                 }
                 break;
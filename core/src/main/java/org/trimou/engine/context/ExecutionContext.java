@@ -15,11 +15,8 @@
  */
 package org.trimou.engine.context;
 
-import java.util.concurrent.atomic.AtomicReference;
-
 import org.trimou.annotations.Internal;
 import org.trimou.engine.parser.Template;
-import org.trimou.engine.resolver.EnhancedResolver.Hint;
 import org.trimou.engine.segment.ExtendSegment;
 import org.trimou.engine.segment.Segment;
 
@@ -37,11 +34,12 @@ public interface ExecutionContext {
     /**
      * @param key
      * @param keyParts
-     * @param hintRef
+     * @param hintCache
+     *            The cache of hints for the given key, may be
+     *            <code>null</code>
      * @return the wrapper for the given key
      */
-    ValueWrapper getValue(String key, String[] keyParts,
-            AtomicReference<Hint> hintRef);
+    ValueWrapper getValue(String key, String[] keyParts, HintCache hintCache);
 
     /**
      * @param key
@@ -32,6 +32,8 @@ public final class ExecutionContexts {
     */
    public static ExecutionContext newGlobalExecutionContext(
            Configuration configuration) {
+       Resolver[] resolvers = configuration.getResolvers().toArray(
+               new Resolver[configuration.getResolvers().size()]);
        return new DefaultExecutionContext(
                null,
                configuration,
@@ -39,8 +41,7 @@ public final class ExecutionContexts {
                null,
                configuration
                        .getIntegerPropertyValue(EngineConfigurationKey.TEMPLATE_RECURSIVE_INVOCATION_LIMIT),
-               null, configuration.getResolvers().toArray(
-                       new Resolver[configuration.getResolvers().size()]));
+               null, resolvers, ApplicableResolvers.from(resolvers));
    }
 
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.context;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.trimou.annotations.Internal;
+import org.trimou.engine.resolver.EnhancedResolver.Hint;
+
+/**
+ * A small polymorphic inline cache of resolver hints bound to a single tag.
+ * The hints are keyed by the runtime class of the context object (or
+ * <code>null</code> for context unrelated objects). Once the maximum number of
+ * entries is reached the cache is considered megamorphic - the existing hints
+ * are still used but no new hints are created.
+ *
+ * <p>
+ * This construct is thread-safe. Reads are lock-free, the entries are
+ * replaced with a copy-on-write array.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see org.trimou.engine.resolver.EnhancedResolver
+ */
+@Internal
+public final class HintCache {
+
+    static final int MAX_ENTRIES = 4;
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private final AtomicReference<Entry[]> entries;
+
+    public HintCache() {
+        this.entries = new AtomicReference<Entry[]>(EMPTY);
+    }
+
+    /**
+     *
+     * @param contextObjectClass
+     * @return the hint for the given class or <code>null</code> if no such hint
+     *         exists
+     */
+    Hint get(Class<?> contextObjectClass) {
+        for (Entry entry : entries.get()) {
+            if (entry.contextObjectClass == contextObjectClass) {
+                return entry.hint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @param contextObjectClass
+     * @return <code>true</code> if a new hint for the given class should be
+     *         created, <code>false</code> otherwise
+     */
+    boolean accepts(Class<?> contextObjectClass) {
+        return accepts(entries.get(), contextObjectClass);
+    }
+
+    /**
+     * The hint is ignored if the cache already contains a hint for the given
+     * class or the cache is megamorphic.
+     *
+     * @param contextObjectClass
+     * @param hint
+     */
+    void put(Class<?> contextObjectClass, Hint hint) {
+        if (hint == null) {
+            return;
+        }
+        while (true) {
+            Entry[] current = entries.get();
+            if (!accepts(current, contextObjectClass)) {
+                return;
+            }
+            Entry[] updated = new Entry[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = new Entry(contextObjectClass, hint);
+            if (entries.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     *
+     * @return <code>true</code> if no more hints will be created,
+     *         <code>false</code> otherwise
+     */
+    public boolean isMegamorphic() {
+        return entries.get().length >= MAX_ENTRIES;
+    }
+
+    /**
+     *
+     * @return the current number of entries
+     */
+    public int size() {
+        return entries.get().length;
+    }
+
+    private static boolean accepts(Entry[] current,
+            Class<?> contextObjectClass) {
+        if (current.length >= MAX_ENTRIES) {
+            return false;
+        }
+        for (Entry entry : current) {
+            if (entry.contextObjectClass == contextObjectClass) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+
+        private final Class<?> contextObjectClass;
+
+        private final Hint hint;
+
+        Entry(Class<?> contextObjectClass, Hint hint) {
+            this.contextObjectClass = contextObjectClass;
+            this.hint = hint;
+        }
+
+    }
+
+}
@@ -15,15 +15,19 @@
  */
 package org.trimou.engine.listener;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.util.Collection;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.trimou.Mustache;
 import org.trimou.engine.cache.ComputingCache;
+import org.trimou.engine.resource.ReleaseCallback;
 import org.trimou.util.Checker;
 
 import com.google.common.base.Predicate;
@@ -35,6 +39,15 @@ import com.google.common.collect.ImmutableSet;
  * errors. Also {@link Mustache#getGeneratedId()} is used to map statistics to a
  * template. On the other hand it's more resource-intensive.
  *
+ * <p>
+ * By default the data for every single rendering are kept, i.e. the memory
+ * consumption grows with every rendering. In the bounded mode only a
+ * fixed-size latency histogram per template is kept and the statistics
+ * include percentiles (see {@link HistogramStats}). Optionally, the bounded
+ * statistics may only reflect the renderings finished within a sliding time
+ * window. The raw data are not available in the bounded mode.
+ * </p>
+ *
  * @author Martin Kouba
  */
 public class EnhancedStatsCollector extends AbstractStatsCollector {
@@ -42,47 +55,151 @@ public class EnhancedStatsCollector extends AbstractStatsCollector {
     public static final String COMPUTING_CACHE_CONSUMER_ID = EnhancedStatsCollector.class
             .getName();
 
+    /**
+     * The number of slots a sliding window is divided into
+     */
+    static final int SLIDING_WINDOW_SLOTS = 6;
+
     private final ConcurrentMap<Long, String> idsToNames;
 
+    private final boolean isBounded;
+
+    private final long slotDuration;
+
+    /**
+     * Start times of the renderings in progress (bounded mode only)
+     */
+    private final ConcurrentMap<Long, Long> inProgress;
+
     protected ComputingCache<Long, ConcurrentMap<Long, ExecutionData>> data;
 
+    private ComputingCache<Long, LatencyWindow> histograms;
+
     public EnhancedStatsCollector() {
         this(null, null);
     }
 
     public EnhancedStatsCollector(Predicate<String> templatePredicate,
             TimeUnit timeUnit) {
+        this(templatePredicate, timeUnit, false, 0, null);
+    }
+
+    /**
+     *
+     * @param templatePredicate
+     * @param timeUnit
+     * @param isBounded
+     *            If set to <code>true</code> only a fixed-size histogram is
+     *            kept for each template
+     */
+    public EnhancedStatsCollector(Predicate<String> templatePredicate,
+            TimeUnit timeUnit, boolean isBounded) {
+        this(templatePredicate, timeUnit, isBounded, 0, null);
+    }
+
+    /**
+     * Creates a bounded collector whose statistics only reflect the renderings
+     * within the sliding time window of the given duration.
+     *
+     * @param templatePredicate
+     * @param timeUnit
+     * @param slidingWindowDuration
+     * @param slidingWindowUnit
+     */
+    public EnhancedStatsCollector(Predicate<String> templatePredicate,
+            TimeUnit timeUnit, long slidingWindowDuration,
+            TimeUnit slidingWindowUnit) {
+        this(templatePredicate, timeUnit, true, slidingWindowDuration,
+                slidingWindowUnit);
+        Checker.checkArgumentNotNull(slidingWindowUnit);
+        checkArgument(slidingWindowDuration > 0,
+                "Sliding window duration must be positive");
+    }
+
+    private EnhancedStatsCollector(Predicate<String> templatePredicate,
+            TimeUnit timeUnit, boolean isBounded, long slidingWindowDuration,
+            TimeUnit slidingWindowUnit) {
         super(templatePredicate, timeUnit);
-        idsToNames = new ConcurrentHashMap<Long, String>();
+        this.idsToNames = new ConcurrentHashMap<Long, String>();
+        this.isBounded = isBounded;
+        this.slotDuration = slidingWindowUnit != null ? Math.max(1,
+                slidingWindowUnit.toNanos(slidingWindowDuration)
+                        / SLIDING_WINDOW_SLOTS) : 0;
+        this.inProgress = isBounded ? new ConcurrentHashMap<Long, Long>()
+                : null;
     }
 
     @Override
-    public void renderingStarted(MustacheRenderingEvent event) {
+    public void renderingStarted(final MustacheRenderingEvent event) {
         if (isApplied(event.getMustacheName())) {
             idsToNames.putIfAbsent(event.getMustacheGeneratedId(),
                     event.getMustacheName());
-            data.get(event.getMustacheGeneratedId()).put(
-                    event.getGeneratedId(), new ExecutionData(System.nanoTime()));
+            if (isBounded) {
+                inProgress.put(event.getGeneratedId(), System.nanoTime());
+                event.registerReleaseCallback(new ReleaseCallback() {
+                    @Override
+                    public void release() {
+                        // The rendering was not finished - it's an error
+                        if (inProgress.remove(event.getGeneratedId()) != null) {
+                            histograms.get(event.getMustacheGeneratedId())
+                                    .current(System.nanoTime()).recordError();
+                        }
+                    }
+                });
+            } else {
+                data.get(event.getMustacheGeneratedId()).put(
+                        event.getGeneratedId(),
+                        new ExecutionData(System.nanoTime()));
+            }
         }
     }
 
     @Override
     public void renderingFinished(MustacheRenderingEvent event) {
         if (isApplied(event.getMustacheName())) {
-            data.get(event.getMustacheGeneratedId())
-                    .get(event.getGeneratedId()).setEnd(System.nanoTime());
+            long end = System.nanoTime();
+            if (isBounded) {
+                Long start = inProgress.remove(event.getGeneratedId());
+                if (start != null) {
+                    histograms.get(event.getMustacheGeneratedId())
+                            .current(end).record(end - start);
+                }
+            } else {
+                data.get(event.getMustacheGeneratedId())
+                        .get(event.getGeneratedId()).setEnd(end);
+            }
         }
     }
 
     @Override
     protected void init() {
-        data = configuration.getComputingCacheFactory().create(COMPUTING_CACHE_CONSUMER_ID,
-                new ComputingCache.Function<Long, ConcurrentMap<Long, ExecutionData>>() {
-                    @Override
-                    public ConcurrentMap<Long, ExecutionData> compute(Long key) {
-                        return new ConcurrentHashMap<>();
-                    }
-                }, null, null, null);
+        if (isBounded) {
+            histograms = configuration.getComputingCacheFactory().create(
+                    COMPUTING_CACHE_CONSUMER_ID,
+                    new ComputingCache.Function<Long, LatencyWindow>() {
+                        @Override
+                        public LatencyWindow compute(Long key) {
+                            return new LatencyWindow(slotDuration);
+                        }
+                    }, null, null, null);
+        } else {
+            data = configuration.getComputingCacheFactory().create(COMPUTING_CACHE_CONSUMER_ID,
+                    new ComputingCache.Function<Long, ConcurrentMap<Long, ExecutionData>>() {
+                        @Override
+                        public ConcurrentMap<Long, ExecutionData> compute(Long key) {
+                            return new ConcurrentHashMap<>();
+                        }
+                    }, null, null, null);
+        }
+    }
+
+    /**
+     *
+     * @return <code>true</code> if only a fixed-size histogram is kept for
+     *         each template, <code>false</code> otherwise
+     */
+    public boolean isBounded() {
+        return isBounded;
     }
 
     /**
@@ -92,6 +209,12 @@ public class EnhancedStatsCollector extends AbstractStatsCollector {
      */
     public Stats getStats(Mustache mustache) {
         Checker.checkArgumentNotNull(mustache);
+        if (isBounded) {
+            LatencyWindow window = histograms.getIfPresent(mustache
+                    .getGeneratedId());
+            return window != null ? parseData(mustache.getName(),
+                    mustache.getGeneratedId(), window) : null;
+        }
         ConcurrentMap<Long, ExecutionData> times = data.getIfPresent(mustache
                 .getGeneratedId());
         if (times != null) {
@@ -107,6 +230,14 @@ public class EnhancedStatsCollector extends AbstractStatsCollector {
      */
     public Set<Stats> getStats() {
         ImmutableSet.Builder<Stats> builder = ImmutableSet.builder();
+        if (isBounded) {
+            for (Entry<Long, LatencyWindow> entry : histograms.getAllPresent()
+                    .entrySet()) {
+                builder.add(parseData(idsToNames.get(entry.getKey()),
+                        entry.getKey(), entry.getValue()));
+            }
+            return builder.build();
+        }
         for (Entry<Long, ConcurrentMap<Long, ExecutionData>> entry : data
                 .getAllPresent().entrySet()) {
             builder.add(parseData(idsToNames.get(entry.getKey()),
@@ -118,10 +249,14 @@ public class EnhancedStatsCollector extends AbstractStatsCollector {
     /**
      *
      * @param mustache
-     * @return the raw data for the given template
+     * @return the raw data for the given template or <code>null</code> if no
+     *         data are available or the bounded mode is used
      */
     public Collection<ExecutionData> getRawData(Mustache mustache) {
         Checker.checkArgumentNotNull(mustache);
+        if (isBounded) {
+            return null;
+        }
         ConcurrentMap<Long, ExecutionData> executions = data.getIfPresent(mustache
                 .getGeneratedId());
         if (executions != null) {
@@ -135,7 +270,24 @@ public class EnhancedStatsCollector extends AbstractStatsCollector {
      * Drop all the collected data.
      */
     public void clearData() {
-        data.clear();
+        if (isBounded) {
+            histograms.clear();
+        } else {
+            data.clear();
+        }
+    }
+
+    private Stats parseData(String mustacheName, long mustacheId,
+            LatencyWindow window) {
+        LatencyHistogram.Snapshot snapshot = window.snapshot(System
+                .nanoTime());
+        return new HistogramStats(mustacheId, mustacheName,
+                snapshot.getCount(), snapshot.getErrors(),
+                convert(snapshot.getTotal()), convert(snapshot.getMean()),
+                convert(snapshot.getMin()), convert(snapshot.getMax()),
+                convert(snapshot.getValueAtPercentile(50)),
+                convert(snapshot.getValueAtPercentile(95)),
+                convert(snapshot.getValueAtPercentile(99)));
     }
 
     private Stats parseData(String mustacheName, long mustacheId,
@@ -189,4 +341,135 @@ public class EnhancedStatsCollector extends AbstractStatsCollector {
 
     }
 
-}
\ No newline at end of file
+    /**
+     * The statistics computed from a latency histogram. Note that the
+     * percentile values are approximate.
+     */
+    public static class HistogramStats extends Stats {
+
+        private final long p50Time;
+
+        private final long p95Time;
+
+        private final long p99Time;
+
+        public HistogramStats(long id, String name, long finished,
+                long errors, long totalTime, long meanTime, long minTime,
+                long maxTime, long p50Time, long p95Time, long p99Time) {
+            super(id, name, finished, errors, totalTime, meanTime, minTime,
+                    maxTime);
+            this.p50Time = p50Time;
+            this.p95Time = p95Time;
+            this.p99Time = p99Time;
+        }
+
+        /**
+         *
+         * @return the median rendering time
+         */
+        public long getP50Time() {
+            return p50Time;
+        }
+
+        /**
+         *
+         * @return the 95th percentile of rendering time
+         */
+        public long getP95Time() {
+            return p95Time;
+        }
+
+        /**
+         *
+         * @return the 99th percentile of rendering time
+         */
+        public long getP99Time() {
+            return p99Time;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(super.toString());
+            builder.setLength(builder.length() - 1);
+            builder.append(", p50Time=");
+            builder.append(p50Time);
+            builder.append(", p95Time=");
+            builder.append(p95Time);
+            builder.append(", p99Time=");
+            builder.append(p99Time);
+            builder.append("]");
+            return builder.toString();
+        }
+
+    }
+
+    /**
+     * A ring of histograms, each one covering a time slot. If the slot
+     * duration is zero, a single histogram is used and the data never expire.
+     */
+    private static class LatencyWindow {
+
+        private final long slotDuration;
+
+        private final AtomicReferenceArray<Slot> slots;
+
+        LatencyWindow(long slotDuration) {
+            this.slotDuration = slotDuration;
+            this.slots = new AtomicReferenceArray<Slot>(
+                    slotDuration > 0 ? SLIDING_WINDOW_SLOTS : 1);
+            if (slotDuration == 0) {
+                slots.set(0, new Slot(0));
+            }
+        }
+
+        LatencyHistogram current(long now) {
+            if (slotDuration == 0) {
+                return slots.get(0).histogram;
+            }
+            long period = now / slotDuration;
+            int idx = index(period);
+            Slot slot = slots.get(idx);
+            while (slot == null || slot.period < period) {
+                // The slot is expired - replace it with a fresh one
+                Slot fresh = new Slot(period);
+                if (slots.compareAndSet(idx, slot, fresh)) {
+                    return fresh.histogram;
+                }
+                slot = slots.get(idx);
+            }
+            return slot.histogram;
+        }
+
+        LatencyHistogram.Snapshot snapshot(long now) {
+            LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+            long oldestPeriod = slotDuration > 0 ? now / slotDuration
+                    - SLIDING_WINDOW_SLOTS + 1 : 0;
+            for (int i = 0; i < slots.length(); i++) {
+                Slot slot = slots.get(i);
+                if (slot != null && slot.period >= oldestPeriod) {
+                    slot.histogram.addTo(snapshot);
+                }
+            }
+            return snapshot;
+        }
+
+        private int index(long period) {
+            return (int) (((period % SLIDING_WINDOW_SLOTS) + SLIDING_WINDOW_SLOTS) % SLIDING_WINDOW_SLOTS);
+        }
+
+    }
+
+    private static class Slot {
+
+        private final long period;
+
+        private final LatencyHistogram histogram;
+
+        Slot(long period) {
+            this.period = period;
+            this.histogram = new LatencyHistogram();
+        }
+
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.listener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, lock-free histogram of durations in nanoseconds. Values are
+ * recorded into log-linear buckets (similar to HdrHistogram) - the relative
+ * error of a reported value is lower than 7%. Values greater than
+ * {@link #MAX_VALUE} are recorded as {@link #MAX_VALUE}.
+ *
+ * <p>
+ * The total time and the number of errors are kept in striped counters so
+ * that concurrent renderings do not contend on a single memory location.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see EnhancedStatsCollector
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+    /**
+     * Approximately 18 minutes
+     */
+    static final long MAX_VALUE = (1L << 40) - 1;
+
+    static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private static final int STRIPES = stripes();
+
+    /**
+     * Each stripe occupies a whole cache line to avoid false sharing
+     */
+    private static final int STRIPE_PADDING = 8;
+
+    private static final int TOTAL_OFFSET = 0;
+
+    private static final int ERRORS_OFFSET = 1;
+
+    private final AtomicLongArray counts;
+
+    private final AtomicLongArray stripes;
+
+    private final AtomicLong min;
+
+    private final AtomicLong max;
+
+    LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.stripes = new AtomicLongArray(STRIPES * STRIPE_PADDING);
+        this.min = new AtomicLong(Long.MAX_VALUE);
+        this.max = new AtomicLong(0);
+    }
+
+    /**
+     *
+     * @param duration
+     *            The duration in nanoseconds
+     */
+    void record(long duration) {
+        long value = duration < 0 ? 0 : Math.min(duration, MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        stripes.addAndGet(stripe() + TOTAL_OFFSET, value);
+        updateMin(value);
+        updateMax(value);
+    }
+
+    void recordError() {
+        stripes.incrementAndGet(stripe() + ERRORS_OFFSET);
+    }
+
+    /**
+     * Add the current data to the given snapshot.
+     *
+     * @param snapshot
+     */
+    void addTo(Snapshot snapshot) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            snapshot.counts[i] += count;
+            snapshot.count += count;
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            snapshot.total += stripes.get(i * STRIPE_PADDING + TOTAL_OFFSET);
+            snapshot.errors += stripes
+                    .get(i * STRIPE_PADDING + ERRORS_OFFSET);
+        }
+        snapshot.min = Math.min(snapshot.min, min.get());
+        snapshot.max = Math.max(snapshot.max, max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // The value shifted is always in the upper half of sub-buckets
+        int shift = (63 - Long.numberOfLeadingZeros(value))
+                - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT
+                + (int) ((value >>> shift) - SUB_BUCKET_HALF_COUNT);
+    }
+
+    /**
+     *
+     * @param index
+     * @return the highest value which would be recorded in the given bucket
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT
+                + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private void updateMin(long value) {
+        long current = min.get();
+        while (value < current) {
+            if (min.compareAndSet(current, value)) {
+                break;
+            }
+            current = min.get();
+        }
+    }
+
+    private void updateMax(long value) {
+        long current = max.get();
+        while (value > current) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+            current = max.get();
+        }
+    }
+
+    private static int stripe() {
+        long id = Thread.currentThread().getId();
+        // Spread the sequential thread ids
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash >>> 16) & (STRIPES - 1)) * STRIPE_PADDING;
+    }
+
+    private static int stripes() {
+        return Integer.highestOneBit(
+                Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+    }
+
+    /**
+     * A mutable, non-thread-safe aggregate of one or more histograms.
+     */
+    static final class Snapshot {
+
+        private final long[] counts = new long[BUCKET_COUNT];
+
+        private long count;
+
+        private long total;
+
+        private long errors;
+
+        private long min = Long.MAX_VALUE;
+
+        private long max;
+
+        long getCount() {
+            return count;
+        }
+
+        long getTotal() {
+            return total;
+        }
+
+        long getErrors() {
+            return errors;
+        }
+
+        long getMin() {
+            return count > 0 ? min : 0;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        long getMean() {
+            return count > 0 ? total / count : 0;
+        }
+
+        /**
+         *
+         * @param percentile
+         *            A value between 0 and 100
+         * @return the value at the given percentile
+         */
+        long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1,
+                    (long) Math.ceil(count * (percentile / 100.0)));
+            long current = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                current += counts[i];
+                if (current >= rank) {
+                    return Math.max(Math.min(highestValueOf(i), max), getMin());
+                }
+            }
+            return max;
+        }
+
+    }
+
+}
@@ -18,21 +18,35 @@ package org.trimou.engine.locator;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.io.Reader;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.trimou.engine.config.ConfigurationKey;
+import org.trimou.engine.config.SimpleConfigurationKey;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
+import org.trimou.util.CharBufferReader;
 import org.trimou.util.Checker;
 import org.trimou.util.Files;
 import org.trimou.util.Strings;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Filesystem template locator.
  *
+ * <p>
+ * The template file is read by means of a {@link FileChannel} and decoded at
+ * once. The returned reader holds the decoded contents so that the parser and
+ * the template source cache may avoid intermediate copies.
+ * </p>
+ *
  * @author Martin Kouba
  */
 public class FileSystemTemplateLocator extends FilePathTemplateLocator {
@@ -40,6 +54,21 @@ public class FileSystemTemplateLocator extends FilePathTemplateLocator {
     private static final Logger logger = LoggerFactory
             .getLogger(FileSystemTemplateLocator.class);
 
+    /**
+     * Template files whose size in bytes is greater than or equal to this
+     * limit are memory-mapped instead of read into a heap buffer. Use zero
+     * value to disable memory mapping. Note that on some operating systems a
+     * mapped file cannot be modified or deleted until the mapping is garbage
+     * collected.
+     *
+     * @since 1.8.1
+     */
+    public static final ConfigurationKey MEMORY_MAPPING_THRESHOLD_KEY = new SimpleConfigurationKey(
+            FileSystemTemplateLocator.class.getName()
+                    + ".memoryMappingThreshold", 1048576l);
+
+    private long memoryMappingThreshold;
+
     /**
      *
      * @param priority
@@ -62,6 +91,20 @@ public class FileSystemTemplateLocator extends FilePathTemplateLocator {
         checkRootDir();
     }
 
+    @Override
+    public void init() {
+        super.init();
+        this.memoryMappingThreshold = configuration
+                .getLongPropertyValue(MEMORY_MAPPING_THRESHOLD_KEY);
+    }
+
+    @Override
+    public Set<ConfigurationKey> getConfigurationKeys() {
+        return ImmutableSet.<ConfigurationKey> builder()
+                .addAll(super.getConfigurationKeys())
+                .add(MEMORY_MAPPING_THRESHOLD_KEY).build();
+    }
+
     @Override
     public Reader locateRealPath(String realPath) {
         try {
@@ -73,11 +116,15 @@ public class FileSystemTemplateLocator extends FilePathTemplateLocator {
                 return null;
             }
             logger.debug("Template located: {}", template.getAbsolutePath());
-            return new InputStreamReader(new FileInputStream(template), getDefaultFileEncoding());
+            return new CharBufferReader(Charset.forName(
+                    getDefaultFileEncoding()).decode(read(template)));
 
         } catch (FileNotFoundException e) {
             return null;
-        } catch (UnsupportedEncodingException e) {
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.TEMPLATE_LOADING_ERROR, e);
+        } catch (IllegalArgumentException e) {
+            // Illegal or unsupported charset
             throw new MustacheException(MustacheProblem.TEMPLATE_LOADING_ERROR, e);
         }
     }
@@ -92,4 +139,27 @@ public class FileSystemTemplateLocator extends FilePathTemplateLocator {
         return new File(getRootPath());
     }
 
+    private ByteBuffer read(File template) throws IOException {
+        FileInputStream in = new FileInputStream(template);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (memoryMappingThreshold > 0 && size >= memoryMappingThreshold) {
+                // The mapping remains valid after the channel is closed
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Template file too large: " + template);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // Read until the end of the file
+            }
+            buffer.flip();
+            return buffer;
+        } finally {
+            in.close();
+        }
+    }
+
 }
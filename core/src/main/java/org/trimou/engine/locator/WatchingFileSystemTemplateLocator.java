@@ -0,0 +1,287 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.locator;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder.EngineBuiltCallback;
+import org.trimou.engine.config.ConfigurationKey;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.config.SimpleConfigurationKey;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+import org.trimou.util.Files;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Filesystem template locator which watches the root directory (including
+ * subdirectories) for changes. A changed template and all the cached templates
+ * which depend on it are compiled again in the background and then replaced
+ * in the template cache - see also {@link MustacheEngine#reloadTemplate(String)}
+ * . Therefore there's no need to set
+ * {@link EngineConfigurationKey#TEMPLATE_CACHE_EXPIRATION_TIMEOUT}.
+ *
+ * <p>
+ * The watching starts once the engine is built and stops when
+ * {@link #stopWatching()} is called. The watcher thread is a daemon thread. If
+ * the template cache is disabled the changes are picked up anyway and so the
+ * watching is not started at all.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see java.nio.file.WatchService
+ * @since 1.8.1
+ */
+public class WatchingFileSystemTemplateLocator extends
+        FileSystemTemplateLocator implements EngineBuiltCallback {
+
+    private static final Logger logger = LoggerFactory
+            .getLogger(WatchingFileSystemTemplateLocator.class);
+
+    /**
+     * The number of milliseconds to wait for subsequent changes before the
+     * changed templates are reloaded. Note that saving a file usually results
+     * in several events.
+     */
+    public static final ConfigurationKey QUIET_PERIOD_KEY = new SimpleConfigurationKey(
+            WatchingFileSystemTemplateLocator.class.getName() + ".quietPeriod",
+            100l);
+
+    private static final AtomicInteger WATCHER_SEQUENCE = new AtomicInteger();
+
+    private long quietPeriod;
+
+    private volatile MustacheEngine engine;
+
+    private WatchService watchService;
+
+    private Thread watcher;
+
+    /**
+     * Only accessed by the watcher thread once the watching is started
+     */
+    private final Map<WatchKey, Path> directories;
+
+    /**
+     *
+     * @param priority
+     * @param rootPath
+     */
+    public WatchingFileSystemTemplateLocator(int priority, String rootPath) {
+        this(priority, rootPath, null);
+    }
+
+    /**
+     *
+     * @param priority
+     * @param rootPath
+     * @param suffix
+     */
+    public WatchingFileSystemTemplateLocator(int priority, String rootPath,
+            String suffix) {
+        super(priority, rootPath, suffix);
+        this.directories = new HashMap<WatchKey, Path>();
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        this.quietPeriod = configuration.getLongPropertyValue(QUIET_PERIOD_KEY);
+    }
+
+    @Override
+    public Set<ConfigurationKey> getConfigurationKeys() {
+        return ImmutableSet.<ConfigurationKey> builder()
+                .addAll(super.getConfigurationKeys()).add(QUIET_PERIOD_KEY)
+                .build();
+    }
+
+    @Override
+    public synchronized void engineBuilt(MustacheEngine engine) {
+        if (this.engine != null) {
+            throw new IllegalStateException(
+                    "The locator is already watching changes for another engine");
+        }
+        this.engine = engine;
+        if (engine.getConfiguration().getBooleanPropertyValue(
+                EngineConfigurationKey.DEBUG_MODE)
+                || !engine.getConfiguration().getBooleanPropertyValue(
+                        EngineConfigurationKey.TEMPLATE_CACHE_ENABLED)) {
+            logger.info("Template cache disabled - watching not started");
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerAll(getRootDir().toPath());
+        } catch (IOException e) {
+            throw new MustacheException(
+                    MustacheProblem.TEMPLATE_LOCATOR_INVALID_CONFIGURATION, e);
+        }
+        watcher = new Thread(new Watcher(), "trimou-template-watcher-"
+                + WATCHER_SEQUENCE.incrementAndGet());
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching changes [rootDir: {}, quietPeriod: {} ms]",
+                getRootDir(), quietPeriod);
+    }
+
+    /**
+     * Stop watching changes. It's not possible to start the watching again.
+     */
+    public synchronized void stopWatching() {
+        if (watcher == null) {
+            return;
+        }
+        watcher.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close the watch service", e);
+        }
+        watcher = null;
+    }
+
+    /**
+     *
+     * @return <code>true</code> if the locator is watching changes,
+     *         <code>false</code> otherwise
+     */
+    public synchronized boolean isWatching() {
+        return watcher != null;
+    }
+
+    private void registerAll(Path dir) throws IOException {
+        java.nio.file.Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir,
+                    BasicFileAttributes attrs) throws IOException {
+                directories.put(dir.register(watchService, ENTRY_CREATE,
+                        ENTRY_MODIFY, ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void processEvents(WatchKey key, Set<String> changed) {
+        Path dir = directories.get(key);
+        if (dir == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (OVERFLOW.equals(event.kind())) {
+                // Some events were lost
+                logger.warn("Changes may have been lost - invalidating the template cache");
+                engine.invalidateTemplateCache();
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (ENTRY_CREATE.equals(event.kind())
+                    && java.nio.file.Files.isDirectory(path)) {
+                try {
+                    registerAll(path);
+                } catch (IOException e) {
+                    logger.warn("Unable to watch the directory: " + path, e);
+                }
+                // Files may have been created before the directory was
+                // registered
+                for (File file : Files.listFiles(path.toFile(), getSuffix())) {
+                    changed.add(toTemplateId(file));
+                }
+                continue;
+            }
+            File file = path.toFile();
+            if (getSuffix() == null
+                    || file.getName().endsWith("." + getSuffix())) {
+                changed.add(toTemplateId(file));
+            }
+        }
+        if (!key.reset()) {
+            // The directory is not accessible anymore
+            directories.remove(key);
+        }
+    }
+
+    private void reload(Set<String> changed) {
+        for (String templateId : changed) {
+            try {
+                engine.reloadTemplate(templateId);
+                logger.info("Template reloaded: {}", templateId);
+            } catch (RuntimeException e) {
+                logger.warn("Unable to reload the template " + templateId
+                        + " - the previous version is used", e);
+            }
+        }
+    }
+
+    private String toTemplateId(File file) {
+        return stripSuffix(constructVirtualPath(file));
+    }
+
+    private class Watcher implements Runnable {
+
+        @Override
+        public void run() {
+            Set<String> changed = new LinkedHashSet<String>();
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    WatchKey key = changed.isEmpty() ? watchService.take()
+                            : watchService.poll(quietPeriod,
+                                    TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        processEvents(key, changed);
+                    } else {
+                        // No more changes within the quiet period
+                        reload(changed);
+                        changed.clear();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ClosedWatchServiceException e) {
+                    break;
+                }
+            }
+            logger.debug("Watching stopped [rootDir: {}]", getRootDir());
+        }
+
+    }
+
+}
@@ -20,14 +20,9 @@ import static org.trimou.engine.config.EngineConfigurationKey.START_DELIMITER;
 import static org.trimou.util.Checker.checkArgumentNotEmpty;
 import static org.trimou.util.Checker.checkArgumentsNotNull;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.nio.CharBuffer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,13 +31,20 @@ import org.trimou.engine.MustacheTagType;
 import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
+import org.trimou.util.CharBufferReader;
 import org.trimou.util.Strings;
 
-import com.google.common.collect.ImmutableSet;
-
 /**
  * The default parser. It's not thread-safe and may not be reused.
  *
+ * <p>
+ * The template is read in blocks of characters. Text runs and tag contents
+ * are scanned for the next significant character (delimiter or line
+ * separator) and appended to the buffer as a whole. If the contents are
+ * already decoded (see {@link CharBufferReader}) the whole template is
+ * processed as a single block.
+ * </p>
+ *
  * @author Martin Kouba
  */
 class DefaultParser implements Parser {
@@ -50,6 +52,12 @@ class DefaultParser implements Parser {
     private static final Logger logger = LoggerFactory
             .getLogger(DefaultParser.class);
 
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private static final char LF = Strings.LINE_SEPARATOR_LF.charAt(0);
+
+    private static final char CR = Strings.LINE_SEPARATOR_CR.charAt(0);
+
     private MustacheEngine engine;
 
     private State state;
@@ -66,14 +74,6 @@ class DefaultParser implements Parser {
 
     private ParsingHandler handler;
 
-    private final Set<String> supportedSeparators;
-
-    private List<String> lastMatchedSeparators;
-
-    private Set<Character> zeroIndexNonSeparatorCharacters;
-
-    private int separatorIdx;
-
     /**
      *
      * @param engine
@@ -84,30 +84,42 @@ class DefaultParser implements Parser {
         this.delimiterIdx = 0;
         this.triple = false;
         this.buffer = new StringBuilder();
-        this.separatorIdx = 0;
         this.engine = engine;
         this.delimiters = new Delimiters(engine.getConfiguration()
                 .getStringPropertyValue(START_DELIMITER), engine
                 .getConfiguration().getStringPropertyValue(END_DELIMITER));
-        this.supportedSeparators = ImmutableSet.of(Strings.LINE_SEPARATOR_LF,
-                Strings.LINE_SEPARATOR_CR, Strings.LINE_SEPARATOR_CRLF);
-        this.zeroIndexNonSeparatorCharacters = new HashSet<Character>();
     }
 
     public void parse(String name, Reader reader, ParsingHandler handler) {
         checkArgumentNotEmpty(name);
         checkArgumentsNotNull(reader, handler);
         this.handler = handler;
-        reader = ensureBufferedReader(reader);
 
         try {
 
             // Start of document
             handler.startTemplate(name, delimiters, engine);
 
-            int val;
-            while ((val = reader.read()) != -1) {
-                processCharacter((char) val);
+            CharBuffer contents = reader instanceof CharBufferReader ? ((CharBufferReader) reader)
+                    .readAll() : null;
+            if (contents != null && contents.hasArray()) {
+                // The contents are already decoded - no need to copy
+                processBlock(contents.array(), contents.arrayOffset()
+                        + contents.position(), contents.arrayOffset()
+                        + contents.limit());
+            } else {
+                Reader source = contents != null ? new CharBufferReader(
+                        contents) : reader;
+                char[] block = new char[READ_BUFFER_SIZE];
+                int length;
+                while ((length = source.read(block)) != -1) {
+                    processBlock(block, 0, length);
+                }
+            }
+
+            if (state == State.LINE_SEPARATOR) {
+                // Flush the last line separator (and the preceding text)
+                lineSeparatorFound(Strings.LINE_SEPARATOR_CR);
             }
 
             if (buffer.length() > 0) {
@@ -122,11 +134,6 @@ class DefaultParser implements Parser {
                 }
             }
 
-            if (state == State.LINE_SEPARATOR) {
-                // Flush the last line separator
-                lineSeparatorFound(lastMatchedSeparators.get(0));
-            }
-
             // End of document
             handler.endTemplate();
 
@@ -135,6 +142,79 @@ class DefaultParser implements Parser {
         }
     }
 
+    private void processBlock(char[] block, int from, int to) {
+        int idx = from;
+        while (idx < to) {
+            switch (state) {
+            case TEXT:
+                idx = text(block, idx, to);
+                break;
+            case TAG:
+                idx = tag(block, idx, to);
+                break;
+            default:
+                processCharacter(block[idx++]);
+            }
+        }
+    }
+
+    /**
+     * Append the text run up to the next start delimiter or line separator
+     * character and process this character.
+     *
+     * @param block
+     * @param from
+     * @param to
+     * @return the index of the next character to process
+     */
+    private int text(char[] block, int from, int to) {
+        char start = delimiters.getStart(0);
+        int idx = from;
+        while (idx < to) {
+            char character = block[idx];
+            if (character == start || character == LF || character == CR) {
+                break;
+            }
+            idx++;
+        }
+        if (idx > from) {
+            buffer.append(block, from, idx - from);
+        }
+        if (idx < to) {
+            text(block[idx++]);
+        }
+        return idx;
+    }
+
+    /**
+     * Append the tag content up to the next end delimiter character and
+     * process this character.
+     *
+     * @param block
+     * @param from
+     * @param to
+     * @return the index of the next character to process
+     */
+    private int tag(char[] block, int from, int to) {
+        if (buffer.length() == 0) {
+            // The first character might start a triple mustache
+            tag(block[from]);
+            return from + 1;
+        }
+        char end = delimiters.getEnd(0);
+        int idx = from;
+        while (idx < to && block[idx] != end) {
+            idx++;
+        }
+        if (idx > from) {
+            buffer.append(block, from, idx - from);
+        }
+        if (idx < to) {
+            tag(block[idx++]);
+        }
+        return idx;
+    }
+
     private void processCharacter(char character) {
         switch (state) {
         case TEXT:
@@ -166,19 +246,11 @@ class DefaultParser implements Parser {
                 state = State.START_TAG;
                 delimiterIdx = 1;
             }
-        } else if ((lastMatchedSeparators = findMatchingSeparators(character, 0))
-                .size() > 0) {
-            if (lastMatchedSeparators.size() == 1
-                    && lastMatchedSeparators.get(0).length() == 1) {
-                // Single-char separator
-                lineSeparatorFound(lastMatchedSeparators.get(0));
-            } else if ((lastMatchedSeparators.size() > 1)
-                    || (lastMatchedSeparators.size() == 1 && lastMatchedSeparators
-                            .get(0).length() > 1)) {
-                // Multiple separators or multi-char separator
-                state = State.LINE_SEPARATOR;
-                separatorIdx = 1;
-            }
+        } else if (character == LF) {
+            lineSeparatorFound(Strings.LINE_SEPARATOR_LF);
+        } else if (character == CR) {
+            // CR or CRLF
+            state = State.LINE_SEPARATOR;
         } else {
             buffer.append(character);
         }
@@ -244,23 +316,11 @@ class DefaultParser implements Parser {
     }
 
     private void lineSeparator(char character) {
-
-        List<String> matched = findMatchingSeparators(character, separatorIdx);
-
-        if (matched.isEmpty()) {
-            // Single-char separator
-            for (String separator : lastMatchedSeparators) {
-                if (separator.length() == separatorIdx) {
-                    lineSeparatorFound(separator);
-                    processCharacter(character);
-                }
-            }
-        } else if (matched.size() == 1) {
-            // Multi-char separator
-            lineSeparatorFound(matched.get(0));
-        } else if (matched.size() > 1) {
-            lastMatchedSeparators = matched;
-            separatorIdx++;
+        if (character == LF) {
+            lineSeparatorFound(Strings.LINE_SEPARATOR_CRLF);
+        } else {
+            lineSeparatorFound(Strings.LINE_SEPARATOR_CR);
+            processCharacter(character);
         }
     }
 
@@ -274,7 +334,6 @@ class DefaultParser implements Parser {
         flushLineSeparator(lineSeparator);
         line++;
         state = State.TEXT;
-        separatorIdx = 0;
     }
 
     /**
@@ -307,11 +366,6 @@ class DefaultParser implements Parser {
         handler.lineSeparator(separator);
     }
 
-    private Reader ensureBufferedReader(Reader reader) {
-        return reader instanceof BufferedReader ? reader : new BufferedReader(
-                reader);
-    }
-
     private ParsedTag deriveTag(String buffer) {
         MustacheTagType type = identifyTagType(buffer);
         String key = extractContent(type, buffer);
@@ -381,34 +435,7 @@ class DefaultParser implements Parser {
     }
 
     private void clearBuffer() {
-        this.buffer = new StringBuilder();
-    }
-
-    /**
-     *
-     * @param character
-     * @param atIndex
-     * @return the list of matching line separators
-     */
-    private List<String> findMatchingSeparators(char character, int atIndex) {
-
-        if (atIndex == 0 && zeroIndexNonSeparatorCharacters.contains(character)) {
-            return Collections.emptyList();
-        }
-
-        List<String> matchedSeparators = new ArrayList<String>(
-                supportedSeparators.size());
-
-        for (String separator : supportedSeparators) {
-            if (separator.length() > atIndex
-                    && separator.charAt(atIndex) == character) {
-                matchedSeparators.add(separator);
-            }
-        }
-        if (atIndex == 0 && matchedSeparators.isEmpty()) {
-            zeroIndexNonSeparatorCharacters.add(character);
-        }
-        return matchedSeparators;
+        buffer.setLength(0);
     }
 
     private enum State {
@@ -15,6 +15,7 @@
  */
 package org.trimou.engine.parser;
 
+import static org.trimou.engine.config.EngineConfigurationKey.MERGE_TEXT_SEGMENTS;
 import static org.trimou.engine.config.EngineConfigurationKey.REMOVE_STANDALONE_LINES;
 import static org.trimou.engine.config.EngineConfigurationKey.REMOVE_UNNECESSARY_SEGMENTS;
 import static org.trimou.engine.config.EngineConfigurationKey.REUSE_LINE_SEPARATOR_SEGMENTS;
@@ -77,6 +78,8 @@ class DefaultParsingHandler implements ParsingHandler {
 
     private Template template;
 
+    private RootSegmentBase rootSegmentBase;
+
     private long start;
 
     private int line = 1;
@@ -110,7 +113,7 @@ class DefaultParsingHandler implements ParsingHandler {
     @Override
     public void endTemplate() {
 
-        RootSegmentBase rootSegmentBase = validate();
+        rootSegmentBase = validate();
 
         // Post processing
         if (engine.getConfiguration().getBooleanPropertyValue(
@@ -125,18 +128,47 @@ class DefaultParsingHandler implements ParsingHandler {
                 REUSE_LINE_SEPARATOR_SEGMENTS)) {
             SegmentBases.reuseLineSeparatorSegments(rootSegmentBase);
         }
+        if (engine.getConfiguration().getBooleanPropertyValue(
+                MERGE_TEXT_SEGMENTS)) {
+            SegmentBases.mergeTextSegments(rootSegmentBase);
+        }
+        compile();
+    }
 
-        template = new Template(engine.getConfiguration()
-                .getIdentifierGenerator().generate(Mustache.class),
-                templateName, engine);
-        template.setRootSegment(rootSegmentBase.asSegment(template));
+    /**
+     * Compile the template from an already post-processed segment tree, i.e.
+     * no parsing is involved.
+     *
+     * @param name
+     * @param rootSegmentBase
+     * @param engine
+     * @see PrecompilationStore
+     */
+    void compileTemplate(String name, RootSegmentBase rootSegmentBase,
+            MustacheEngine engine) {
 
-        logger.debug("Compilation of {} finished [time: {} ms, segments: {}]",
-                new Object[] { templateName,
-                        System.currentTimeMillis() - start,
-                        template.getRootSegment().getSegmentsSize(true) });
+        this.engine = engine;
+        this.templateName = name;
+        this.rootSegmentBase = rootSegmentBase;
+
+        start = System.currentTimeMillis();
+        logger.debug("Start compilation of {} from the segment tree",
+                new Object[] { name });
+
+        if (engine.getConfiguration().getBooleanPropertyValue(
+                REUSE_LINE_SEPARATOR_SEGMENTS)) {
+            SegmentBases.reuseLineSeparatorSegments(rootSegmentBase);
+        }
+        compile();
+    }
 
-        rootSegmentBase = null;
+    /**
+     *
+     * @return the post-processed segment tree the compiled template was
+     *         created from
+     */
+    RootSegmentBase getRootSegmentBase() {
+        return rootSegmentBase;
     }
 
     @Override
@@ -348,6 +380,19 @@ class DefaultParsingHandler implements ParsingHandler {
         return index++;
     }
 
+    private void compile() {
+
+        template = new Template(engine.getConfiguration()
+                .getIdentifierGenerator().generate(Mustache.class),
+                templateName, engine);
+        template.setRootSegment(rootSegmentBase.asSegment(template));
+
+        logger.debug("Compilation of {} finished [time: {} ms, segments: {}]",
+                new Object[] { templateName,
+                        System.currentTimeMillis() - start,
+                        template.getRootSegment().getSegmentsSize(true) });
+    }
+
     /**
      * Root segment
      */
@@ -427,6 +472,15 @@ class DefaultParsingHandler implements ParsingHandler {
             return segments.listIterator();
         }
 
+        int size() {
+            return segments.size();
+        }
+
+        void setSegments(List<SegmentBase> segments) {
+            this.segments.clear();
+            this.segments.addAll(segments);
+        }
+
     }
 
     static class LineSeparatorBase extends SegmentBase {
@@ -460,6 +514,16 @@ class DefaultParsingHandler implements ParsingHandler {
                     MustacheTagType.UNESCAPE_VARIABLE);
         }
 
+        ValueSegmentBase(String content, int line, int index,
+                boolean unescape) {
+            super(SegmentType.VALUE, content, line, index);
+            this.unescape = unescape;
+        }
+
+        boolean isUnescape() {
+            return unescape;
+        }
+
         @Override
         ValueSegment asSegment(Template template) {
             return new ValueSegment(getContent(), getOrigin(template), unescape);
@@ -475,10 +539,18 @@ class DefaultParsingHandler implements ParsingHandler {
             super(tag, line, index);
         }
 
+        PartialSegmentBase(String content, int line, int index) {
+            super(SegmentType.PARTIAL, content, line, index);
+        }
+
         public void setIndentation(String indentation) {
             this.indentation = indentation;
         }
 
+        String getIndentation() {
+            return indentation;
+        }
+
         @Override
         public PartialSegment asSegment(Template template) {
             return new PartialSegment(getContent(), getOrigin(template),
@@ -519,6 +591,14 @@ class DefaultParsingHandler implements ParsingHandler {
             return content;
         }
 
+        int getLine() {
+            return line;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
         Segment asSegment(Template template) {
             switch (type) {
             case TEXT:
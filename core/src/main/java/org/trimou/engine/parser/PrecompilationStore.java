@@ -0,0 +1,479 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.parser;
+
+import static org.trimou.engine.config.EngineConfigurationKey.END_DELIMITER;
+import static org.trimou.engine.config.EngineConfigurationKey.HANDLEBARS_SUPPORT_ENABLED;
+import static org.trimou.engine.config.EngineConfigurationKey.MERGE_TEXT_SEGMENTS;
+import static org.trimou.engine.config.EngineConfigurationKey.REMOVE_STANDALONE_LINES;
+import static org.trimou.engine.config.EngineConfigurationKey.REMOVE_UNNECESSARY_SEGMENTS;
+import static org.trimou.engine.config.EngineConfigurationKey.SKIP_VALUE_ESCAPING;
+import static org.trimou.engine.config.EngineConfigurationKey.START_DELIMITER;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trimou.Mustache;
+import org.trimou.annotations.Internal;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.config.Configuration;
+import org.trimou.engine.parser.DefaultParsingHandler.ContainerSegmentBase;
+import org.trimou.engine.parser.DefaultParsingHandler.LineSeparatorBase;
+import org.trimou.engine.parser.DefaultParsingHandler.PartialSegmentBase;
+import org.trimou.engine.parser.DefaultParsingHandler.RootSegmentBase;
+import org.trimou.engine.parser.DefaultParsingHandler.SegmentBase;
+import org.trimou.engine.parser.DefaultParsingHandler.ValueSegmentBase;
+import org.trimou.engine.segment.SegmentType;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+import org.trimou.util.CharBufferReader;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+
+/**
+ * An on-disk store of parse results used during template precompilation. For
+ * every template the store keeps a checksum of the template source and the
+ * post-processed segment tree. If the checksum of the current source matches,
+ * the template is compiled from the stored tree, i.e. the parsing and the
+ * post-processing is skipped. Otherwise the template is parsed as usual and
+ * the result is recorded.
+ *
+ * <p>
+ * Note that the compiled templates are still bound to the engine instance
+ * (helpers, resolvers, etc.) and so the last step of the compilation is always
+ * performed. The stored trees depend on the configuration (delimiters,
+ * post-processing, ...) - the whole store is discarded if the configuration
+ * changes.
+ * </p>
+ *
+ * <p>
+ * The store file is read at once and the trees are only decoded when needed.
+ * The file is replaced atomically (if supported by the filesystem) in
+ * {@link #save()}. This class is thread-safe.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @since 1.8.1
+ * @see org.trimou.engine.config.EngineConfigurationKey#PRECOMPILATION_STORE_FILE
+ */
+@Internal
+public class PrecompilationStore {
+
+    private static final Logger logger = LoggerFactory
+            .getLogger(PrecompilationStore.class);
+
+    private static final int MAGIC = 0x54524D50;
+
+    /**
+     * Must be incremented whenever the format changes, e.g. a new segment type
+     * is added
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte NODE_SEGMENT = 0;
+
+    private static final byte NODE_CONTAINER = 1;
+
+    private static final byte NODE_LINE_SEPARATOR = 2;
+
+    private static final byte NODE_VALUE = 3;
+
+    private static final byte NODE_PARTIAL = 4;
+
+    private static final SegmentType[] SEGMENT_TYPES = SegmentType.values();
+
+    private final File file;
+
+    private final MustacheEngine engine;
+
+    private final String fingerprint;
+
+    /**
+     * The entries read from the file
+     */
+    private final Map<String, StoreEntry> stored;
+
+    /**
+     * The entries used during this precompilation
+     */
+    private final ConcurrentMap<String, StoreEntry> used;
+
+    private final AtomicInteger restored;
+
+    private volatile boolean modified;
+
+    /**
+     *
+     * @param file
+     * @param engine
+     */
+    public PrecompilationStore(File file, MustacheEngine engine) {
+        this.file = file;
+        this.engine = engine;
+        this.fingerprint = fingerprint(engine.getConfiguration());
+        this.used = new ConcurrentHashMap<String, StoreEntry>();
+        this.restored = new AtomicInteger();
+        this.stored = read();
+    }
+
+    /**
+     * Compile the template, the parsing is skipped if the stored segment tree
+     * is up to date.
+     *
+     * @param templateId
+     * @param reader
+     * @param parser
+     * @return the compiled template
+     */
+    public Mustache compile(String templateId, Reader reader, Parser parser) {
+
+        CharBuffer contents = readAll(reader);
+        long checksum = checksum(contents);
+        DefaultParsingHandler handler = new DefaultParsingHandler();
+        StoreEntry entry = stored.get(templateId);
+        RootSegmentBase rootSegmentBase = null;
+
+        if (entry != null && entry.checksum == checksum) {
+            rootSegmentBase = decode(templateId, entry);
+        }
+        if (rootSegmentBase != null) {
+            handler.compileTemplate(templateId, rootSegmentBase, engine);
+            restored.incrementAndGet();
+        } else {
+            parser.parse(templateId, new CharBufferReader(contents), handler);
+            entry = new StoreEntry(checksum,
+                    ByteBuffer.wrap(encode(handler.getRootSegmentBase())));
+            modified = true;
+        }
+        used.put(templateId, entry);
+        return handler.getCompiledTemplate();
+    }
+
+    /**
+     * Write the entries used since the store was created to the file. The
+     * file is not written if all the stored entries were used and up to
+     * date.
+     */
+    public void save() {
+
+        logger.info(
+                "{} of {} templates compiled from the precompilation store",
+                restored.get(), used.size());
+
+        if (!modified && used.keySet().equals(stored.keySet())) {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        File temp = null;
+        try {
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Unable to create the directory: "
+                        + parent);
+            }
+            temp = File.createTempFile(file.getName(), ".tmp", parent);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, fingerprint);
+                out.writeInt(used.size());
+                for (Entry<String, StoreEntry> entry : used.entrySet()) {
+                    ByteBuffer payload = entry.getValue().payload.duplicate();
+                    byte[] bytes = new byte[payload.remaining()];
+                    payload.get(bytes);
+                    writeString(out, entry.getKey());
+                    out.writeLong(entry.getValue().checksum);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.debug("Precompilation store written [file: {}, entries: {}]",
+                    file, used.size());
+        } catch (IOException e) {
+            logger.warn("Unable to write the precompilation store: " + file,
+                    e);
+            if (temp != null && temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the number of templates compiled from the stored segment tree
+     */
+    int getRestoredCount() {
+        return restored.get();
+    }
+
+    private Map<String, StoreEntry> read() {
+
+        if (!file.isFile()) {
+            return new HashMap<String, StoreEntry>();
+        }
+        try {
+            // Read the whole file to the heap - the file must not be mapped
+            // or open when replaced in save() (not possible on Windows)
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file
+                    .toPath()));
+            byte[] scratch = new byte[64];
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || !fingerprint.equals(readString(buffer, scratch))) {
+                logger.info(
+                        "Precompilation store ignored - format or configuration changed [file: {}]",
+                        file);
+                return new HashMap<String, StoreEntry>();
+            }
+            int size = buffer.getInt();
+            Map<String, StoreEntry> entries = new HashMap<String, StoreEntry>(
+                    size * 2);
+            for (int i = 0; i < size; i++) {
+                String templateId = readString(buffer, scratch);
+                long checksum = buffer.getLong();
+                int length = buffer.getInt();
+                ByteBuffer payload = buffer.slice();
+                payload.limit(length);
+                buffer.position(buffer.position() + length);
+                entries.put(templateId, new StoreEntry(checksum, payload));
+            }
+            return entries;
+        } catch (IOException e) {
+            logger.warn("Unable to read the precompilation store: " + file, e);
+        } catch (BufferUnderflowException e) {
+            logger.warn("Precompilation store is corrupted: " + file, e);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Precompilation store is corrupted: " + file, e);
+        }
+        return new HashMap<String, StoreEntry>();
+    }
+
+    private CharBuffer readAll(Reader reader) {
+        if (reader instanceof CharBufferReader) {
+            return ((CharBufferReader) reader).readAll();
+        }
+        try {
+            return CharBuffer.wrap(CharStreams.toString(reader));
+        } catch (IOException e) {
+            throw new MustacheException(
+                    MustacheProblem.TEMPLATE_LOADING_ERROR, e);
+        }
+    }
+
+    private RootSegmentBase decode(String templateId, StoreEntry entry) {
+        RootSegmentBase rootSegmentBase = new RootSegmentBase();
+        try {
+            decodeSegments(rootSegmentBase, entry.payload.duplicate(),
+                    new byte[64]);
+            return rootSegmentBase;
+        } catch (RuntimeException e) {
+            logger.warn("Unable to decode the stored segment tree of "
+                    + templateId + " - the template is parsed again", e);
+            return null;
+        }
+    }
+
+    private byte[] encode(RootSegmentBase rootSegmentBase) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            encodeSegments(rootSegmentBase, out);
+            out.flush();
+        } catch (IOException e) {
+            // Cannot happen for an in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void encodeSegments(ContainerSegmentBase container,
+            DataOutputStream out) throws IOException {
+        out.writeInt(container.size());
+        for (SegmentBase segment : container) {
+            if (segment instanceof ContainerSegmentBase) {
+                out.writeByte(NODE_CONTAINER);
+            } else if (segment instanceof LineSeparatorBase) {
+                out.writeByte(NODE_LINE_SEPARATOR);
+            } else if (segment instanceof ValueSegmentBase) {
+                out.writeByte(NODE_VALUE);
+            } else if (segment instanceof PartialSegmentBase) {
+                out.writeByte(NODE_PARTIAL);
+            } else {
+                out.writeByte(NODE_SEGMENT);
+            }
+            out.writeByte(segment.getType().ordinal());
+            writeString(out, segment.getContent());
+            out.writeInt(segment.getLine());
+            out.writeInt(segment.getIndex());
+            if (segment instanceof ContainerSegmentBase) {
+                encodeSegments((ContainerSegmentBase) segment, out);
+            } else if (segment instanceof ValueSegmentBase) {
+                out.writeBoolean(((ValueSegmentBase) segment).isUnescape());
+            } else if (segment instanceof PartialSegmentBase) {
+                writeString(out,
+                        ((PartialSegmentBase) segment).getIndentation());
+            }
+        }
+    }
+
+    private void decodeSegments(ContainerSegmentBase container,
+            ByteBuffer buffer, byte[] scratch) {
+        int size = buffer.getInt();
+        for (int i = 0; i < size; i++) {
+            byte node = buffer.get();
+            SegmentType type = SEGMENT_TYPES[buffer.get()];
+            String content = readString(buffer, scratch);
+            int line = buffer.getInt();
+            int index = buffer.getInt();
+            SegmentBase segment;
+            switch (node) {
+            case NODE_CONTAINER:
+                ContainerSegmentBase child = new ContainerSegmentBase(type,
+                        content, line, index);
+                decodeSegments(child, buffer, scratch);
+                segment = child;
+                break;
+            case NODE_LINE_SEPARATOR:
+                segment = new LineSeparatorBase(content, line, index);
+                break;
+            case NODE_VALUE:
+                segment = new ValueSegmentBase(content, line, index,
+                        buffer.get() != 0);
+                break;
+            case NODE_PARTIAL:
+                PartialSegmentBase partial = new PartialSegmentBase(content,
+                        line, index);
+                partial.setIndentation(readString(buffer, scratch));
+                segment = partial;
+                break;
+            default:
+                segment = new SegmentBase(type, content, line, index);
+                break;
+            }
+            container.addSegment(segment);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+            throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, Charsets.UTF_8);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the characters, the length is also taken into
+     * account.
+     *
+     * @param contents
+     * @return the checksum
+     */
+    static long checksum(CharBuffer contents) {
+        long hash = 0xcbf29ce484222325L;
+        int limit = contents.limit();
+        for (int i = contents.position(); i < limit; i++) {
+            char c = contents.get(i);
+            hash ^= c & 0xff;
+            hash *= 0x100000001b3L;
+            hash ^= c >>> 8;
+            hash *= 0x100000001b3L;
+        }
+        return hash ^ contents.remaining();
+    }
+
+    private static String fingerprint(Configuration configuration) {
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append(configuration.getStringPropertyValue(START_DELIMITER));
+        fingerprint.append('|');
+        fingerprint.append(configuration.getStringPropertyValue(END_DELIMITER));
+        fingerprint.append('|');
+        fingerprint.append(configuration
+                .getBooleanPropertyValue(REMOVE_STANDALONE_LINES));
+        fingerprint.append('|');
+        fingerprint.append(configuration
+                .getBooleanPropertyValue(REMOVE_UNNECESSARY_SEGMENTS));
+        fingerprint.append('|');
+        fingerprint.append(configuration
+                .getBooleanPropertyValue(MERGE_TEXT_SEGMENTS));
+        fingerprint.append('|');
+        fingerprint.append(configuration
+                .getBooleanPropertyValue(SKIP_VALUE_ESCAPING));
+        fingerprint.append('|');
+        fingerprint.append(configuration
+                .getBooleanPropertyValue(HANDLEBARS_SUPPORT_ENABLED));
+        fingerprint.append('|');
+        fingerprint.append(SEGMENT_TYPES.length);
+        return fingerprint.toString();
+    }
+
+    private static class StoreEntry {
+
+        private final long checksum;
+
+        private final ByteBuffer payload;
+
+        StoreEntry(long checksum, ByteBuffer payload) {
+            this.checksum = checksum;
+            this.payload = payload;
+        }
+
+    }
+
+}
@@ -116,6 +116,36 @@ final class SegmentBases {
         }
     }
 
+    /**
+     * Merge each run of adjacent text and line separator segments into a
+     * single text segment.
+     *
+     * @param container
+     */
+    static void mergeTextSegments(ContainerSegmentBase container) {
+
+        List<SegmentBase> segments = new ArrayList<SegmentBase>();
+        List<SegmentBase> run = new ArrayList<SegmentBase>();
+        boolean merged = false;
+
+        for (SegmentBase segment : container) {
+            if (isStaticText(segment.getType())) {
+                run.add(segment);
+                continue;
+            }
+            merged |= flushRun(run, segments);
+            if (segment instanceof ContainerSegmentBase) {
+                mergeTextSegments((ContainerSegmentBase) segment);
+            }
+            segments.add(segment);
+        }
+        merged |= flushRun(run, segments);
+
+        if (merged) {
+            container.setSegments(segments);
+        }
+    }
+
     static int getNumberOfSegments(ContainerSegmentBase container) {
         int count = 0;
         for (SegmentBase segmentBase : container) {
@@ -128,6 +158,39 @@ final class SegmentBases {
         return count;
     }
 
+    /**
+     * Add the given run to the list of segments and clear the run. A run of
+     * two or more segments is replaced with a single text segment.
+     *
+     * @param run
+     * @param segments
+     * @return <code>true</code> if the run was merged, <code>false</code>
+     *         otherwise
+     */
+    private static boolean flushRun(List<SegmentBase> run,
+            List<SegmentBase> segments) {
+        if (run.size() < 2) {
+            segments.addAll(run);
+            run.clear();
+            return false;
+        }
+        StringBuilder text = new StringBuilder();
+        for (SegmentBase segment : run) {
+            text.append(segment.getContent());
+        }
+        SegmentBase first = run.get(0);
+        segments.add(new SegmentBase(SegmentType.TEXT, text.toString(),
+                first.getLine(), first.getIndex()));
+        logger.trace("{} static segments merged", run.size());
+        run.clear();
+        return true;
+    }
+
+    private static boolean isStaticText(SegmentType type) {
+        return type.equals(SegmentType.TEXT)
+                || type.equals(SegmentType.LINE_SEPARATOR);
+    }
+
     /**
      *
      * @param standaloneLine
@@ -15,11 +15,16 @@
  */
 package org.trimou.engine.parser;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
 import java.util.List;
 
 import org.trimou.Mustache;
 import org.trimou.annotations.Internal;
 import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.context.ExecutionContext;
 import org.trimou.engine.context.ExecutionContexts;
 import org.trimou.engine.listener.MustacheListener;
@@ -28,6 +33,7 @@ import org.trimou.engine.resource.AbstractReleaseCallbackContainer;
 import org.trimou.engine.segment.RootSegment;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
+import org.trimou.util.OutputStreamAppendable;
 
 import com.google.common.collect.Lists;
 
@@ -39,6 +45,13 @@ import com.google.common.collect.Lists;
 @Internal
 public class Template implements Mustache {
 
+    /**
+     * The output buffer of the last rendering to an {@link OutputStream}
+     * performed by the current thread. The reference is cleared while in use so
+     * that a nested rendering never shares it.
+     */
+    private static final ThreadLocal<SoftReference<byte[]>> OUTPUT_BUFFER = new ThreadLocal<SoftReference<byte[]>>();
+
     private final long generatedId;
 
     private final String name;
@@ -100,6 +113,35 @@ public class Template implements Mustache {
         }
     }
 
+    @Override
+    public void render(OutputStream outputStream, Charset charset,
+            Object data) {
+        int bufferSize = engine.getConfiguration().getIntegerPropertyValue(
+                EngineConfigurationKey.OUTPUT_BUFFER_SIZE);
+        SoftReference<byte[]> bufferReference = OUTPUT_BUFFER.get();
+        byte[] buffer = null;
+        if (bufferReference != null) {
+            buffer = bufferReference.get();
+            // The buffer is in use
+            OUTPUT_BUFFER.set(null);
+        }
+        if (buffer == null || buffer.length != bufferSize) {
+            buffer = new byte[bufferSize];
+            bufferReference = new SoftReference<byte[]>(buffer);
+        }
+        OutputStreamAppendable appendable = new OutputStreamAppendable(
+                outputStream, charset, buffer);
+        render(appendable, data);
+        try {
+            appendable.flushBuffer();
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+        }
+        // If the rendering fails the buffer is not reused - there might be
+        // async tasks still referencing the appendable
+        OUTPUT_BUFFER.set(bufferReference);
+    }
+
     public RootSegment getRootSegment() {
         return rootSegment;
     }
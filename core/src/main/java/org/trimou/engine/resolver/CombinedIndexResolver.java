@@ -34,7 +34,8 @@ import org.trimou.engine.validation.Validateable;
  * @see ListIndexResolver
  * @see ArrayIndexResolver
  */
-public class CombinedIndexResolver extends IndexResolver implements Validateable {
+public class CombinedIndexResolver extends IndexResolver implements
+        Validateable, TypeAwareResolver {
 
     private boolean isEnabled;
 
@@ -85,6 +86,13 @@ public class CombinedIndexResolver extends IndexResolver implements Validateable
         return null;
     }
 
+    @Override
+    public boolean isApplicable(Class<?> contextObjectClass) {
+        return contextObjectClass != null
+                && (contextObjectClass.isArray() || List.class
+                        .isAssignableFrom(contextObjectClass));
+    }
+
 
 
     @Override
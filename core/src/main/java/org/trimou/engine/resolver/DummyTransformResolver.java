@@ -23,7 +23,8 @@ import java.util.UUID;
  *
  * @author Martin Kouba
  */
-public class DummyTransformResolver extends TransformResolver {
+public class DummyTransformResolver extends TransformResolver implements
+        TypeAwareResolver {
 
     private final String marker;
 
@@ -61,4 +62,11 @@ public class DummyTransformResolver extends TransformResolver {
         return null;
     }
 
+    @Override
+    public boolean isApplicable(Class<?> contextObjectClass) {
+        // The marker is a string
+        return contextObjectClass == null
+                || String.class.equals(contextObjectClass);
+    }
+
 }
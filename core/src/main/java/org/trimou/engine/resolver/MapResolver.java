@@ -25,7 +25,8 @@ import java.util.Map;
  *
  * @author Martin Kouba
  */
-public class MapResolver extends AbstractResolver {
+public class MapResolver extends AbstractResolver implements
+        TypeAwareResolver {
 
     public static final int MAP_RESOLVER_PRIORITY = rightAfter(ThisResolver.THIS_RESOLVER_PRIORITY);
 
@@ -46,6 +47,13 @@ public class MapResolver extends AbstractResolver {
         };
     }
 
+    @Override
+    public boolean isApplicable(Class<?> contextObjectClass) {
+        return contextObjectClass != null
+                && (Map.class.isAssignableFrom(contextObjectClass) || Mapper.class
+                        .isAssignableFrom(contextObjectClass));
+    }
+
     @SuppressWarnings("rawtypes")
     @Override
     public Object resolve(Object contextObject, String name,
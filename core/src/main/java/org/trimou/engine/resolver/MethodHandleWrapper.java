@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.resolver;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Invokes a getter or reads a field by means of a {@link MethodHandle} adapted
+ * to the <code>(Object)Object</code> type. Unlike {@link Method#invoke(Object,
+ * Object...)} there is no varargs array allocation and no access check per
+ * invocation. Note that the handle is not a constant and so the JIT compiler
+ * does not inline the target member - whether this is faster than reflective
+ * invocation depends on the JVM.
+ *
+ * @author Martin Kouba
+ */
+class MethodHandleWrapper implements MemberWrapper {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(
+            Object.class, Object.class);
+
+    private final MethodHandle handle;
+
+    private MethodHandleWrapper(MethodHandle handle) {
+        if (handle.type().parameterCount() == 0) {
+            // Static member - the instance is ignored
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        this.handle = handle.asType(GETTER_TYPE);
+    }
+
+    @Override
+    public Object getValue(Object instance) throws IllegalAccessException,
+            IllegalArgumentException, InvocationTargetException {
+        try {
+            return (Object) handle.invokeExact(instance);
+        } catch (Throwable e) {
+            // Follow the behavior of Method.invoke()
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     *
+     * @param method
+     *            The accessible method
+     * @return the wrapper
+     * @throws IllegalAccessException
+     */
+    static MethodHandleWrapper of(Method method) throws IllegalAccessException {
+        return new MethodHandleWrapper(MethodHandles.lookup().unreflect(method));
+    }
+
+    /**
+     *
+     * @param field
+     *            The accessible field
+     * @return the wrapper
+     * @throws IllegalAccessException
+     */
+    static MethodHandleWrapper of(Field field) throws IllegalAccessException {
+        return new MethodHandleWrapper(MethodHandles.lookup().unreflectGetter(
+                field));
+    }
+
+}
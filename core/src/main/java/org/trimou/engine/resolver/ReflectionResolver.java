@@ -20,7 +20,6 @@ import static org.trimou.engine.priority.Priorities.rightBefore;
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
-import java.util.Collections;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -37,6 +36,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Reflection-based resolver attempts to find a matching member on the context
@@ -47,7 +47,7 @@ import com.google.common.cache.RemovalNotification;
  * @see Reflections#findMethod(Class, String)
  */
 public class ReflectionResolver extends AbstractResolver implements
-        RemovalListener<MemberKey, Optional<MemberWrapper>> {
+        RemovalListener<MemberKey, Optional<MemberWrapper>>, TypeAwareResolver {
 
     public static final int REFLECTION_RESOLVER_PRIORITY = rightBefore(WithPriority.EXTENSION_RESOLVERS_DEFAULT_PRIORITY);
 
@@ -68,6 +68,16 @@ public class ReflectionResolver extends AbstractResolver implements
     public static final ConfigurationKey HINT_FALLBACK_ENABLED_KEY = new SimpleConfigurationKey(
             ReflectionResolver.class.getName() + ".hintFallbackEnabled", true);
 
+    /**
+     * If enabled, members are accessed by means of
+     * {@link java.lang.invoke.MethodHandle}s instead of reflective invocation.
+     * A reflective accessor is used if a method handle cannot be obtained.
+     * Disabled by default - measure the render performance on the JVM used
+     * before enabling it.
+     */
+    public static final ConfigurationKey METHOD_HANDLES_ENABLED_KEY = new SimpleConfigurationKey(
+            ReflectionResolver.class.getName() + ".methodHandlesEnabled", false);
+
     private static final Logger logger = LoggerFactory
             .getLogger(ReflectionResolver.class);
 
@@ -78,6 +88,8 @@ public class ReflectionResolver extends AbstractResolver implements
 
     private boolean hintFallbackEnabled;
 
+    private boolean methodHandlesEnabled;
+
     public ReflectionResolver() {
         this(REFLECTION_RESOLVER_PRIORITY);
     }
@@ -99,7 +111,7 @@ public class ReflectionResolver extends AbstractResolver implements
         if (memberCache != null) {
             wrapper = memberCache.get(key).orNull();
         } else {
-            wrapper = findWrapper(key).orNull();
+            wrapper = findWrapper(key, methodHandlesEnabled).orNull();
         }
 
         if (wrapper == null) {
@@ -114,6 +126,11 @@ public class ReflectionResolver extends AbstractResolver implements
         }
     }
 
+    @Override
+    public boolean isApplicable(Class<?> contextObjectClass) {
+        return contextObjectClass != null;
+    }
+
     @Override
     public Hint createHint(Object contextObject, String name,
             ResolutionContext context) {
@@ -123,7 +140,7 @@ public class ReflectionResolver extends AbstractResolver implements
             Optional<MemberWrapper> found = memberCache.getIfPresent(key);
             wrapper = found != null ? found.get() : null;
         } else {
-            wrapper = findWrapper(key).orNull();
+            wrapper = findWrapper(key, methodHandlesEnabled).orNull();
         }
         if (wrapper != null) {
             return new ReflectionHint(key, wrapper);
@@ -136,11 +153,16 @@ public class ReflectionResolver extends AbstractResolver implements
     public void init() {
         long memberCacheMaxSize = configuration
                 .getLongPropertyValue(MEMBER_CACHE_MAX_SIZE_KEY);
-        logger.debug("Initialized [memberCacheMaxSize: {}]", memberCacheMaxSize);
+        methodHandlesEnabled = configuration
+                .getBooleanPropertyValue(METHOD_HANDLES_ENABLED_KEY);
+        logger.debug(
+                "Initialized [memberCacheMaxSize: {}, methodHandlesEnabled: {}]",
+                memberCacheMaxSize, methodHandlesEnabled);
         if (memberCacheMaxSize > 0) {
             memberCache = configuration.getComputingCacheFactory().create(
-                    COMPUTING_CACHE_CONSUMER_ID, new MemberComputingFunction(),
-                    null, memberCacheMaxSize, null);
+                    COMPUTING_CACHE_CONSUMER_ID,
+                    new MemberComputingFunction(methodHandlesEnabled), null,
+                    memberCacheMaxSize, null);
         }
         hintFallbackEnabled = configuration
                 .getBooleanPropertyValue(HINT_FALLBACK_ENABLED_KEY);
@@ -148,8 +170,8 @@ public class ReflectionResolver extends AbstractResolver implements
 
     @Override
     public Set<ConfigurationKey> getConfigurationKeys() {
-        return Collections
-                .<ConfigurationKey> singleton(MEMBER_CACHE_MAX_SIZE_KEY);
+        return ImmutableSet.<ConfigurationKey> of(MEMBER_CACHE_MAX_SIZE_KEY,
+                METHOD_HANDLES_ENABLED_KEY);
     }
 
     @Override
@@ -191,7 +213,8 @@ public class ReflectionResolver extends AbstractResolver implements
         return memberCache != null ? memberCache.size() : 0l;
     }
 
-    private static Optional<MemberWrapper> findWrapper(MemberKey key) {
+    private static Optional<MemberWrapper> findWrapper(MemberKey key,
+            boolean methodHandlesEnabled) {
         // Find accesible method with the given name, no
         // parameters and non-void return type
         Method foundMethod = Reflections.findMethod(key.getClazz(),
@@ -201,6 +224,15 @@ public class ReflectionResolver extends AbstractResolver implements
             if (!foundMethod.isAccessible()) {
                 SecurityActions.setAccessible(foundMethod);
             }
+            if (methodHandlesEnabled) {
+                try {
+                    return Optional.<MemberWrapper> of(MethodHandleWrapper
+                            .of(foundMethod));
+                } catch (IllegalAccessException e) {
+                    logger.debug("Unable to obtain a method handle for {}",
+                            foundMethod);
+                }
+            }
             return Optional.<MemberWrapper> of(new MethodWrapper(foundMethod));
         }
 
@@ -211,6 +243,15 @@ public class ReflectionResolver extends AbstractResolver implements
             if (!foundField.isAccessible()) {
                 SecurityActions.setAccessible(foundField);
             }
+            if (methodHandlesEnabled) {
+                try {
+                    return Optional.<MemberWrapper> of(MethodHandleWrapper
+                            .of(foundField));
+                } catch (IllegalAccessException e) {
+                    logger.debug("Unable to obtain a method handle for {}",
+                            foundField);
+                }
+            }
             return Optional.<MemberWrapper> of(new FieldWrapper(foundField));
         }
         // Member not found
@@ -220,9 +261,15 @@ public class ReflectionResolver extends AbstractResolver implements
     private static class MemberComputingFunction implements
             ComputingCache.Function<MemberKey, Optional<MemberWrapper>> {
 
+        private final boolean methodHandlesEnabled;
+
+        MemberComputingFunction(boolean methodHandlesEnabled) {
+            this.methodHandlesEnabled = methodHandlesEnabled;
+        }
+
         @Override
         public Optional<MemberWrapper> compute(MemberKey key) {
-            return findWrapper(key);
+            return findWrapper(key, methodHandlesEnabled);
         }
 
     }
@@ -23,7 +23,8 @@ import org.trimou.util.Strings;
 /**
  * @author Martin Kouba
  */
-public class ThisResolver extends AbstractResolver {
+public class ThisResolver extends AbstractResolver implements
+        TypeAwareResolver {
 
     public static final int THIS_RESOLVER_PRIORITY = rightAfter(WithPriority.BUILTIN_RESOLVERS_DEFAULT_PRIORITY);
 
@@ -45,6 +46,11 @@ public class ThisResolver extends AbstractResolver {
         };
     }
 
+    @Override
+    public boolean isApplicable(Class<?> contextObjectClass) {
+        return contextObjectClass != null;
+    }
+
     @Override
     public Object resolve(Object contextObject, String name,
             ResolutionContext context) {
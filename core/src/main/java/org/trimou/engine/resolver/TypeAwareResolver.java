@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.resolver;
+
+/**
+ * A resolver which is only able to resolve a value for specific types of
+ * context objects. The engine may skip the resolver for all the context
+ * objects the resolver is not applicable to, i.e. the resolver chain only
+ * contains the relevant resolvers.
+ *
+ * <p>
+ * The result of {@link #isApplicable(Class)} must not change for a specific
+ * class - it is computed once and cached. Note that a subclass which
+ * overrides {@link #resolve(Object, String, ResolutionContext)} but not
+ * {@link #isApplicable(Class)} is considered applicable to all context
+ * objects.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @since 1.8.1
+ */
+public interface TypeAwareResolver extends Resolver {
+
+    /**
+     *
+     * @param contextObjectClass
+     *            The runtime class of the context object or <code>null</code>
+     *            if there is no context object, e.g. when resolving the
+     *            leading context object
+     * @return <code>false</code> if the resolver never resolves a non-null
+     *         value for the context objects of the given class,
+     *         <code>true</code> otherwise
+     */
+    boolean isApplicable(Class<?> contextObjectClass);
+
+}
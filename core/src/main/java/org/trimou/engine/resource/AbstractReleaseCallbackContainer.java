@@ -56,6 +56,15 @@ public abstract class AbstractReleaseCallbackContainer implements
         }
     }
 
+    /**
+     *
+     * @return <code>true</code> if at least one callback is registered,
+     *         <code>false</code> otherwise
+     */
+    public boolean hasReleaseCallbacks() {
+        return releaseCallbacks != null;
+    }
+
     @Override
     public void registerReleaseCallback(ReleaseCallback callback) {
         if (releaseCallbacks == null) {
@@ -33,6 +33,11 @@ abstract class AbstractContainerSegment extends AbstractSegment implements
 
     private final List<Segment> segments;
 
+    /**
+     * The same segments, used for execution
+     */
+    private final Segment[] segmentsArray;
+
     /**
      *
      * @param name
@@ -42,10 +47,12 @@ abstract class AbstractContainerSegment extends AbstractSegment implements
     public AbstractContainerSegment(String name, Origin origin, List<Segment> segments) {
         super(name, origin);
         this.segments = segments;
+        this.segmentsArray = segments.toArray(new Segment[segments.size()]);
     }
 
     public Appendable execute(Appendable appendable, ExecutionContext context) {
-        for (Segment segment : segments) {
+        // Iterate over the array so that no iterator is allocated
+        for (Segment segment : segmentsArray) {
             appendable = segment.execute(appendable, context);
         }
         return appendable;
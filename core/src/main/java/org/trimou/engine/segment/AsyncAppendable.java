@@ -16,7 +16,10 @@
 package org.trimou.engine.segment;
 
 import java.io.IOException;
-import java.util.concurrent.Future;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.trimou.exception.MustacheException;
@@ -24,31 +27,81 @@ import org.trimou.exception.MustacheProblem;
 import org.trimou.handlebars.Options;
 
 /**
- * A wrapper for an asynchronous appendable. This construct is not thread-safe.
+ * An ordered rope of text buffers and placeholders for asynchronous results.
+ *
+ * <p>
+ * Each asynchronous execution registers a placeholder, i.e. a nested
+ * appendable, which is filled by the executing thread. Neither the rendering
+ * thread nor the executing threads ever wait for a result. Only the top-level
+ * appendable writes to the original (parent) appendable - it streams the text
+ * buffers and completed placeholders in order as soon as the whole prefix is
+ * ready. The text is never copied between the levels.
+ * </p>
+ *
+ * <p>
+ * Each instance must only be appended to by a single thread. Placeholders are
+ * read by the thread owning the top-level appendable.
+ * </p>
  *
  * @author Martin Kouba
  * @see Options#executeAsync(org.trimou.handlebars.Options.HelperExecutable)
  */
 class AsyncAppendable implements Appendable {
 
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * The buffered text is streamed to the parent if possible once this limit
+     * is exceeded
+     */
+    private static final int STREAMING_THRESHOLD = 4096;
+
+    /**
+     * The parent appendable, <code>null</code> for placeholders
+     */
     protected final Appendable parent;
 
-    protected final StringBuilder buffer;
+    /**
+     * Text buffers and placeholders, guarded by this. A node is replaced with
+     * <code>null</code> once streamed.
+     */
+    private final List<Object> nodes;
 
-    protected volatile Future<AsyncAppendable> future;
+    /**
+     * Only modified by the owning thread
+     */
+    private StringBuilder buffer;
+
+    /**
+     * The position of the streaming, only used for the top-level appendable
+     */
+    private final Deque<Position> cursor;
+
+    private boolean isComplete;
+
+    private Throwable failure;
 
     /**
      *
      * @param parent
      */
-    AsyncAppendable(Appendable parent) {
+    private AsyncAppendable(Appendable parent) {
         this.parent = parent;
+        this.nodes = new ArrayList<Object>();
         this.buffer = new StringBuilder();
+        this.nodes.add(buffer);
+        if (parent != null) {
+            this.cursor = new ArrayDeque<Position>();
+            this.cursor.push(new Position(this));
+        } else {
+            this.cursor = null;
+        }
     }
 
     @Override
     public Appendable append(CharSequence csq) throws IOException {
         buffer.append(csq);
+        streamIfNeeded();
         return this;
     }
 
@@ -56,6 +109,7 @@ class AsyncAppendable implements Appendable {
     public Appendable append(CharSequence csq, int start, int end)
             throws IOException {
         buffer.append(csq, start, end);
+        streamIfNeeded();
         return this;
     }
 
@@ -66,70 +120,154 @@ class AsyncAppendable implements Appendable {
     }
 
     /**
-     * Append the result to the parent.
+     * Register a new placeholder. The subsequent text is appended after the
+     * placeholder.
+     *
+     * @return the placeholder to be filled and completed by the executing
+     *         thread
      */
-    private void flush() {
-        try {
-            parent.append(future.get(60, TimeUnit.SECONDS).collect(this));
-            parent.append(buffer);
-            if (parent instanceof AsyncAppendable) {
-                ((AsyncAppendable) parent).flush();
-            }
-        } catch (Exception e) {
-            throw new MustacheException(
-                    MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR, e);
+    AsyncAppendable registerPlaceholder() {
+        AsyncAppendable placeholder = new AsyncAppendable(null);
+        synchronized (this) {
+            nodes.add(placeholder);
+            buffer = new StringBuilder();
+            nodes.add(buffer);
+        }
+        if (parent != null) {
+            stream(false);
         }
+        return placeholder;
     }
 
     /**
+     * Mark the placeholder as complete. No more text may be appended.
      *
-     * @param latch
-     *            The top-level async appendable
-     * @return the collected output
+     * @param failure
+     *            The failure of the asynchronous execution, may be
+     *            <code>null</code>
      */
-    private CharSequence collect(AsyncAppendable latch) {
-
-        if (parent.equals(latch) && future == null) {
-            return buffer;
-        }
+    synchronized void complete(Throwable failure) {
+        this.isComplete = true;
+        this.failure = failure;
+        notifyAll();
+    }
 
-        StringBuilder ret = null;
+    /**
+     * Wait for all the placeholders and write the rest of the output to the
+     * parent.
+     */
+    private void flush() {
+        complete(null);
+        stream(true);
+    }
 
-        if (parent instanceof AsyncAppendable && !parent.equals(latch)) {
-            ret = new StringBuilder();
-            ret.append(((AsyncAppendable) parent).collect(latch));
+    private void streamIfNeeded() {
+        if (parent != null && buffer.length() > STREAMING_THRESHOLD
+                && nodes.size() > 1) {
+            synchronized (this) {
+                buffer = new StringBuilder();
+                nodes.add(buffer);
+            }
+            stream(false);
         }
+    }
 
-        if (future != null) {
-            try {
-                if (ret == null) {
-                    ret = new StringBuilder();
+    /**
+     * Stream the text in order as long as possible.
+     *
+     * @param wait
+     *            If set to <code>true</code> wait for the incomplete
+     *            placeholders
+     */
+    private void stream(boolean wait) {
+        try {
+            streaming: while (!cursor.isEmpty()) {
+                Position position = cursor.peek();
+                AsyncAppendable current = position.appendable;
+                Object node;
+                synchronized (current) {
+                    long deadline = 0;
+                    while (position.index >= current.getSealedNodesCount()) {
+                        if (current.isComplete) {
+                            if (current.failure != null) {
+                                throw new MustacheException(
+                                        MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR,
+                                        current.failure);
+                            }
+                            cursor.pop();
+                            continue streaming;
+                        }
+                        if (!wait) {
+                            return;
+                        }
+                        if (deadline == 0) {
+                            deadline = System.nanoTime() + TIMEOUT;
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            throw new MustacheException(
+                                    MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR,
+                                    "Asynchronous execution timed out");
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(current, remaining);
+                    }
+                    // Release the node so that the streamed text can be
+                    // garbage collected before the rendering is finished
+                    node = current.nodes.set(position.index++, null);
                 }
-                AsyncAppendable result = future.get(60, TimeUnit.SECONDS);
-                if (result.future != null) {
-                    ret.append(result.collect(this));
+                if (node instanceof AsyncAppendable) {
+                    cursor.push(new Position((AsyncAppendable) node));
                 } else {
-                    ret.append(result.buffer);
-                    ret.append(buffer);
+                    parent.append((StringBuilder) node);
                 }
-                return ret;
-            } catch (Exception e) {
-                throw new MustacheException(
-                        MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR, e);
             }
-        } else {
-            return ret != null ? ret.append(buffer) : buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MustacheException(
+                    MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR, e);
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
         }
     }
 
-    void setFuture(Future<AsyncAppendable> future) {
-        this.future = future;
+    /**
+     * The last buffer may only be read when the appendable is complete.
+     *
+     * @return the number of nodes which will not be modified anymore
+     */
+    private int getSealedNodesCount() {
+        return isComplete ? nodes.size() : nodes.size() - 1;
+    }
+
+    /**
+     *
+     * @param appendable
+     * @return the given appendable if it's already asynchronous, or a new
+     *         top-level asynchronous appendable
+     */
+    static AsyncAppendable of(Appendable appendable) {
+        return appendable instanceof AsyncAppendable ? (AsyncAppendable) appendable
+                : new AsyncAppendable(appendable);
     }
 
     static void flushIfNeeded(Appendable appendable) {
-        if (appendable instanceof AsyncAppendable) {
+        if (appendable instanceof AsyncAppendable
+                && ((AsyncAppendable) appendable).parent != null) {
             ((AsyncAppendable) appendable).flush();
         }
     }
 
+    private static final class Position {
+
+        private final AsyncAppendable appendable;
+
+        private int index;
+
+        Position(AsyncAppendable appendable) {
+            this.appendable = appendable;
+            this.index = 0;
+        }
+
+    }
+
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.segment;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+import org.trimou.util.OutputStreamAppendable;
+
+/**
+ * Static text of a segment. If rendered to an {@link OutputStreamAppendable}
+ * the text is only encoded once for the given charset and the bytes are reused
+ * afterwards.
+ *
+ * @author Martin Kouba
+ * @see org.trimou.Mustache#render(java.io.OutputStream, Charset, Object)
+ */
+final class EncodedText {
+
+    private final String text;
+
+    private volatile Encoded encoded;
+
+    /**
+     *
+     * @param text
+     */
+    EncodedText(String text) {
+        this.text = text;
+    }
+
+    void appendTo(Appendable appendable) {
+        try {
+            if (appendable instanceof OutputStreamAppendable) {
+                OutputStreamAppendable outputAppendable = (OutputStreamAppendable) appendable;
+                outputAppendable.write(getBytes(outputAppendable.getCharset()));
+            } else {
+                appendable.append(text);
+            }
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+        }
+    }
+
+    byte[] getBytes(Charset charset) {
+        Encoded current = encoded;
+        if (current == null || !current.charset.equals(charset)) {
+            // The charset will not likely change, so only keep the last one
+            current = new Encoded(charset, text.getBytes(charset));
+            encoded = current;
+        }
+        return current.bytes;
+    }
+
+    private static final class Encoded {
+
+        private final Charset charset;
+
+        private final byte[] bytes;
+
+        Encoded(Charset charset, byte[] bytes) {
+            this.charset = charset;
+            this.bytes = bytes;
+        }
+
+    }
+
+}
@@ -23,14 +23,16 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheTagInfo;
+import org.trimou.engine.cache.ComputingCache;
+import org.trimou.engine.config.Configuration;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.context.ExecutionContext;
 import org.trimou.engine.context.ValueWrapper;
 import org.trimou.engine.parser.Template;
@@ -56,6 +58,9 @@ import com.google.common.collect.ImmutableMap;
  */
 class HelperExecutionHandler {
 
+    public static final String COMPUTING_CACHE_CONSUMER_ID = HelperExecutionHandler.class
+            .getName();
+
     private final Helper helper;
 
     private final OptionsBuilder optionsBuilder;
@@ -142,7 +147,8 @@ class HelperExecutionHandler {
             MustacheEngine engine, HelperAwareSegment segment) {
         Object literal = engine.getConfiguration().getLiteralSupport()
                 .getLiteral(value, segment.getTagInfo());
-        return literal != null ? literal : new DefaultValuePlaceholder(value);
+        return literal != null ? literal : new DefaultValuePlaceholder(value,
+                engine.getConfiguration());
     }
 
     private static class OptionsBuilder implements HelperDefinition {
@@ -161,6 +167,13 @@ class HelperExecutionHandler {
         // true if not placeholder found, also if hash map is empty
         private final boolean isHashValuePlaceholderFound;
 
+        /**
+         * Keys evaluated via {@link Options#getValue(String)}, created lazily
+         *
+         * @see EngineConfigurationKey#HELPER_KEY_CACHE_MAX_SIZE
+         */
+        private volatile ComputingCache<String, ValueProvider> valueProviders;
+
         private OptionsBuilder(List<Object> parameters,
                 Map<String, Object> hash, HelperAwareSegment segment,
                 MustacheEngine engine) {
@@ -199,9 +212,8 @@ class HelperExecutionHandler {
         public DefaultOptions build(Appendable appendable,
                 ExecutionContext executionContext) {
 
-            List<ValueWrapper> valueWrappers = new ArrayList<ValueWrapper>();
-            List<Object> finalParams;
-            Map<String, Object> finalHash;
+            DefaultOptions options = new DefaultOptions(appendable,
+                    executionContext, segment, parameters, hash, engine, this);
 
             if (isParamValuePlaceholderFound) {
                 // At this point parameters list is never empty
@@ -209,21 +221,20 @@ class HelperExecutionHandler {
                 switch (size) {
                 case 1:
                     // Very often there will be only single param
-                    finalParams = Collections
+                    options.parameters = Collections
                             .singletonList(resolveValue(parameters.get(0),
-                                    valueWrappers, executionContext));
+                                    options, executionContext));
                     break;
                 default:
-                    finalParams = new ArrayList<Object>(size);
+                    List<Object> finalParams = new ArrayList<Object>(size);
                     for (Object param : parameters) {
-                        finalParams.add(resolveValue(param, valueWrappers,
+                        finalParams.add(resolveValue(param, options,
                                 executionContext));
                     }
-                    finalParams = Collections.unmodifiableList(finalParams);
+                    options.parameters = Collections
+                            .unmodifiableList(finalParams);
                     break;
                 }
-            } else {
-                finalParams = parameters;
             }
 
             if (isHashValuePlaceholderFound) {
@@ -233,44 +244,86 @@ class HelperExecutionHandler {
                 case 1:
                     Entry<String, Object> singleEntry = hash.entrySet()
                             .iterator().next();
-                    finalHash = Collections.singletonMap(
+                    options.hash = Collections.singletonMap(
                             singleEntry.getKey(),
-                            resolveValue(singleEntry.getValue(), valueWrappers,
+                            resolveValue(singleEntry.getValue(), options,
                                     executionContext));
                     break;
                 default:
-                    finalHash = new HashMap<String, Object>();
+                    Map<String, Object> finalHash = new HashMap<String, Object>();
                     for (Entry<String, Object> entry : hash.entrySet()) {
                         finalHash.put(
                                 entry.getKey(),
-                                resolveValue(entry.getValue(), valueWrappers,
+                                resolveValue(entry.getValue(), options,
                                         executionContext));
                     }
-                    finalHash = Collections.unmodifiableMap(finalHash);
+                    options.hash = Collections.unmodifiableMap(finalHash);
                     break;
                 }
-            } else {
-                finalHash = hash;
             }
-
-            return new DefaultOptions(appendable, executionContext, segment,
-                    finalParams, finalHash, valueWrappers, engine);
+            return options;
         }
 
-        private Object resolveValue(Object value,
-                List<ValueWrapper> valueWrappers,
+        private Object resolveValue(Object value, DefaultOptions options,
                 ExecutionContext executionContext) {
 
-            if (value instanceof ValuePlaceholder) {
+            if (value instanceof DefaultValuePlaceholder) {
+                ValueWrapper wrapper = ((DefaultValuePlaceholder) value)
+                        .getValue(executionContext);
+                options.retain(wrapper);
+                return wrapper.get();
+            } else if (value instanceof ValuePlaceholder) {
                 ValueWrapper wrapper = executionContext
                         .getValue(((ValuePlaceholder) value).getName());
-                valueWrappers.add(wrapper);
+                options.retain(wrapper);
                 return wrapper.get();
             } else {
                 return value;
             }
         }
 
+        /**
+         *
+         * @param key
+         * @param executionContext
+         * @return the value wrapper for the given key
+         */
+        ValueWrapper getValue(String key, ExecutionContext executionContext) {
+            ComputingCache<String, ValueProvider> providers = getValueProviders();
+            return providers != null ? providers.get(key).get(executionContext)
+                    : executionContext.getValue(key);
+        }
+
+        private ComputingCache<String, ValueProvider> getValueProviders() {
+            ComputingCache<String, ValueProvider> providers = valueProviders;
+            if (providers == null) {
+                final Configuration configuration = engine.getConfiguration();
+                Long maxSize = configuration
+                        .getLongPropertyValue(EngineConfigurationKey.HELPER_KEY_CACHE_MAX_SIZE);
+                if (maxSize <= 0) {
+                    return null;
+                }
+                synchronized (this) {
+                    providers = valueProviders;
+                    if (providers == null) {
+                        providers = configuration
+                                .getComputingCacheFactory()
+                                .create(COMPUTING_CACHE_CONSUMER_ID,
+                                        new ComputingCache.Function<String, ValueProvider>() {
+                                            @Override
+                                            public ValueProvider compute(
+                                                    String key) {
+                                                return new ValueProvider(key,
+                                                        configuration);
+                                            }
+                                        }, null, maxSize, null);
+                        valueProviders = providers;
+                    }
+                }
+            }
+            return providers;
+        }
+
         private boolean initParamValuePlaceholderFound(List<Object> parameters) {
             if (parameters.isEmpty()) {
                 return false;
@@ -297,12 +350,16 @@ class HelperExecutionHandler {
 
     }
 
-    private static class DefaultOptions implements Options {
+    static class DefaultOptions implements Options {
 
         private static final Logger logger = LoggerFactory
                 .getLogger(DefaultOptions.class);
 
-        protected final List<ValueWrapper> valueWrappers;
+        /**
+         * Only the wrappers with release callbacks are retained, the list is
+         * created lazily
+         */
+        protected List<ValueWrapper> valueWrappers;
 
         protected Appendable appendable;
 
@@ -314,9 +371,11 @@ class HelperExecutionHandler {
 
         private final HelperAwareSegment segment;
 
-        private final List<Object> parameters;
+        private final OptionsBuilder builder;
 
-        private final Map<String, Object> hash;
+        private List<Object> parameters;
+
+        private Map<String, Object> hash;
 
         /**
          *
@@ -325,22 +384,21 @@ class HelperExecutionHandler {
          * @param segment
          * @param parameters
          * @param hash
-         * @param valueWrappers
          * @param engine
+         * @param builder
          */
         DefaultOptions(Appendable appendable,
                 ExecutionContext executionContext, HelperAwareSegment segment,
                 List<Object> parameters, Map<String, Object> hash,
-                List<ValueWrapper> valueWrappers, MustacheEngine engine) {
+                MustacheEngine engine, OptionsBuilder builder) {
             this.appendable = appendable;
-            this.valueWrappers = valueWrappers;
             this.executionContext = executionContext;
             this.pushed = 0;
-            this.executionContext = executionContext;
             this.segment = segment;
             this.parameters = parameters;
             this.hash = hash;
             this.engine = engine;
+            this.builder = builder;
         }
 
         @Override
@@ -397,8 +455,8 @@ class HelperExecutionHandler {
 
         @Override
         public Object getValue(String key) {
-            ValueWrapper wrapper = executionContext.getValue(key);
-            valueWrappers.add(wrapper);
+            ValueWrapper wrapper = builder.getValue(key, executionContext);
+            retain(wrapper);
             return wrapper.get();
         }
 
@@ -409,11 +467,6 @@ class HelperExecutionHandler {
 
         @Override
         public void executeAsync(final HelperExecutable executable) {
-            // For async execution we need to wrap the original appendable
-            final AsyncAppendable asyncAppendable = new AsyncAppendable(
-                    appendable);
-
-            // Now submit the executable and get the future
             ExecutorService executor = engine.getConfiguration()
                     .geExecutorService();
             if (executor == null) {
@@ -421,22 +474,31 @@ class HelperExecutionHandler {
                         MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR,
                         "ExecutorService must be set in order to submit an asynchronous task");
             }
-            Future<AsyncAppendable> future = executor
-                    .submit(new Callable<AsyncAppendable>() {
-                        @Override
-                        public AsyncAppendable call() throws Exception {
-                            // We need a separate appendable for the async
-                            // execution
-                            DefaultOptions asyncOptions = new DefaultOptions(
-                                    new AsyncAppendable(asyncAppendable),
+            // Register a placeholder for the result - the subsequent output is
+            // appended after the placeholder
+            final AsyncAppendable asyncAppendable = AsyncAppendable
+                    .of(appendable);
+            final AsyncAppendable placeholder = asyncAppendable
+                    .registerPlaceholder();
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            executable.execute(new DefaultOptions(placeholder,
                                     executionContext, segment, parameters,
-                                    hash, new ArrayList<ValueWrapper>(), engine);
-                            executable.execute(asyncOptions);
-                            return (AsyncAppendable) asyncOptions
-                                    .getAppendable();
+                                    hash, engine, builder));
+                            placeholder.complete(null);
+                        } catch (Throwable e) {
+                            placeholder.complete(e);
                         }
-                    });
-            asyncAppendable.setFuture(future);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                placeholder.complete(e);
+                throw new MustacheException(
+                        MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR, e);
+            }
             this.appendable = asyncAppendable;
         }
 
@@ -465,6 +527,15 @@ class HelperExecutionHandler {
             segment.fn(appendable, executionContext);
         }
 
+        @Override
+        public Appendable fn(Appendable appendable, Object... contextObjects) {
+            ExecutionContext context = executionContext;
+            for (Object contextObject : contextObjects) {
+                context = context.setContextObject(contextObject);
+            }
+            return segment.fn(appendable, context);
+        }
+
         @Override
         public MustacheTagInfo getTagInfo() {
             return segment.getTagInfo();
@@ -497,11 +568,22 @@ class HelperExecutionHandler {
                     executionContext);
         }
 
+        /**
+         * A wrapper without release callbacks does not need to be released.
+         *
+         * @param wrapper
+         */
+        void retain(ValueWrapper wrapper) {
+            if (wrapper.hasReleaseCallbacks()) {
+                if (valueWrappers == null) {
+                    valueWrappers = new ArrayList<ValueWrapper>(4);
+                }
+                valueWrappers.add(wrapper);
+            }
+        }
+
         void release() {
-            int wrappersSize = valueWrappers.size();
-            if (wrappersSize == 1) {
-                valueWrappers.get(0).release();
-            } else if (wrappersSize > 1) {
+            if (valueWrappers != null) {
                 for (ValueWrapper wrapper : valueWrappers) {
                     wrapper.release();
                 }
@@ -523,14 +605,18 @@ class HelperExecutionHandler {
 
     private static class DefaultValuePlaceholder implements ValuePlaceholder {
 
-        private final String name;
+        private final ValueProvider provider;
 
-        public DefaultValuePlaceholder(String name) {
-            this.name = name;
+        public DefaultValuePlaceholder(String name, Configuration configuration) {
+            this.provider = new ValueProvider(name, configuration);
         }
 
         public String getName() {
-            return name;
+            return provider.getKey();
+        }
+
+        ValueWrapper getValue(ExecutionContext executionContext) {
+            return provider.get(executionContext);
         }
 
     }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.segment;
+
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.cache.ComputingCache;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.parser.Template;
+import org.trimou.lambda.Lambda;
+
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Compiles the one-off templates for interpolated lambda return values. The
+ * compiled templates are cached per segment and keyed by the return value,
+ * the cache is created lazily.
+ *
+ * @author Martin Kouba
+ * @see Lambda#isReturnValueInterpolated()
+ * @see EngineConfigurationKey#LAMBDA_TEMPLATE_CACHE_MAX_SIZE
+ */
+final class LambdaTemplates {
+
+    public static final String COMPUTING_CACHE_CONSUMER_ID = LambdaTemplates.class
+            .getName();
+
+    private final Segment segment;
+
+    private volatile ComputingCache<String, Template> cache;
+
+    /**
+     *
+     * @param segment
+     */
+    LambdaTemplates(Segment segment) {
+        this.segment = segment;
+    }
+
+    /**
+     *
+     * @param returnValue
+     * @return the compiled template for the given return value
+     */
+    Template get(String returnValue) {
+        ComputingCache<String, Template> templates = getCache();
+        if (templates == null) {
+            return compile(returnValue);
+        }
+        try {
+            return templates.get(returnValue);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Template compile(String returnValue) {
+        return (Template) getEngine().compileMustache(
+                Lambdas.constructLambdaOneoffTemplateName(segment),
+                returnValue);
+    }
+
+    private ComputingCache<String, Template> getCache() {
+        ComputingCache<String, Template> templates = cache;
+        if (templates == null) {
+            Long maxSize = getEngine().getConfiguration().getLongPropertyValue(
+                    EngineConfigurationKey.LAMBDA_TEMPLATE_CACHE_MAX_SIZE);
+            if (maxSize <= 0) {
+                return null;
+            }
+            synchronized (this) {
+                templates = cache;
+                if (templates == null) {
+                    templates = getEngine()
+                            .getConfiguration()
+                            .getComputingCacheFactory()
+                            .create(COMPUTING_CACHE_CONSUMER_ID,
+                                    new ComputingCache.Function<String, Template>() {
+                                        @Override
+                                        public Template compute(String key) {
+                                            return compile(key);
+                                        }
+                                    }, null, maxSize, null);
+                    cache = templates;
+                }
+            }
+        }
+        return templates;
+    }
+
+    private MustacheEngine getEngine() {
+        return segment.getOrigin().getTemplate().getEngine();
+    }
+
+}
@@ -26,8 +26,11 @@ import org.trimou.engine.context.ExecutionContext;
 @Internal
 public class LineSeparatorSegment extends AbstractSegment {
 
+    private final EncodedText encodedText;
+
     public LineSeparatorSegment(String text, Origin origin) {
         super(text, origin);
+        this.encodedText = new EncodedText(text);
     }
 
     @Override
@@ -37,7 +40,7 @@ public class LineSeparatorSegment extends AbstractSegment {
 
     @Override
     public Appendable execute(Appendable appendable, ExecutionContext context) {
-        append(appendable, getText());
+        encodedText.appendTo(appendable);
         return appendable;
     }
 
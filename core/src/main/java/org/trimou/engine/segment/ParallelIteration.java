@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.segment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.trimou.annotations.Internal;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+
+/**
+ * Renders the elements of an iteration in parallel. The elements are split
+ * into chunks of the given size, each chunk is rendered into a separate buffer
+ * and the buffers are appended to the original appendable in order.
+ *
+ * <p>
+ * The calling thread renders all the chunks which were not started by the
+ * executor yet. Therefore, a saturated executor (e.g. due to nested parallel
+ * iterations) does not result in a deadlock.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see EngineConfigurationKey#PARALLEL_ITERATION_ENABLED
+ */
+@Internal
+public final class ParallelIteration {
+
+    private ParallelIteration() {
+    }
+
+    /**
+     *
+     * @param executor
+     * @param size
+     * @param chunkSize
+     * @return <code>true</code> if the iteration of the given size should be
+     *         rendered in parallel, <code>false</code> otherwise
+     */
+    public static boolean isApplicable(ExecutorService executor, int size,
+            int chunkSize) {
+        return executor != null && chunkSize > 0 && size > chunkSize;
+    }
+
+    /**
+     *
+     * @param appendable
+     * @param elements
+     * @param size
+     *            The total number of elements
+     * @param chunkSize
+     * @param executor
+     * @param renderer
+     */
+    public static void execute(Appendable appendable, Iterator<?> elements,
+            int size, int chunkSize, ExecutorService executor,
+            ElementRenderer renderer) {
+
+        // The elements are always obtained in the calling thread
+        List<FutureTask<StringBuilder>> tasks = new ArrayList<FutureTask<StringBuilder>>(
+                size / chunkSize + 1);
+        int index = 1;
+        while (elements.hasNext()) {
+            List<Object> chunk = new ArrayList<Object>(chunkSize);
+            while (elements.hasNext() && chunk.size() < chunkSize) {
+                chunk.add(elements.next());
+            }
+            tasks.add(new FutureTask<StringBuilder>(new Chunk(chunk, index,
+                    renderer)));
+            index += chunk.size();
+        }
+
+        // The first chunk is rendered by the calling thread
+        for (int i = 1; i < tasks.size(); i++) {
+            try {
+                executor.execute(tasks.get(i));
+            } catch (RejectedExecutionException e) {
+                // Will be rendered by the calling thread
+                break;
+            }
+        }
+
+        try {
+            for (FutureTask<StringBuilder> task : tasks) {
+                // No-op if the task was already started
+                task.run();
+                appendable.append(task.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MustacheException(
+                    MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MustacheException) {
+                throw (MustacheException) e.getCause();
+            }
+            throw new MustacheException(
+                    MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR,
+                    e.getCause());
+        } catch (IOException e) {
+            throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+        } finally {
+            for (FutureTask<StringBuilder> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Renders a single element of an iteration. Implementations must be
+     * thread-safe.
+     */
+    public interface ElementRenderer {
+
+        /**
+         *
+         * @param appendable
+         * @param element
+         * @param index
+         *            The index of the element, the first element has index 1
+         * @return the appendable to be used for the next element
+         */
+        Appendable render(Appendable appendable, Object element, int index);
+
+    }
+
+    private static class Chunk implements Callable<StringBuilder> {
+
+        private final List<Object> elements;
+
+        private final int firstIndex;
+
+        private final ElementRenderer renderer;
+
+        Chunk(List<Object> elements, int firstIndex, ElementRenderer renderer) {
+            this.elements = elements;
+            this.firstIndex = firstIndex;
+            this.renderer = renderer;
+        }
+
+        @Override
+        public StringBuilder call() throws Exception {
+            StringBuilder buffer = new StringBuilder();
+            Appendable appendable = buffer;
+            int index = firstIndex;
+            for (Object element : elements) {
+                appendable = renderer.render(appendable, element, index++);
+            }
+            AsyncAppendable.flushIfNeeded(appendable);
+            return buffer;
+        }
+
+    }
+
+}
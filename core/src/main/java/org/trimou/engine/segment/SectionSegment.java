@@ -18,6 +18,7 @@ package org.trimou.engine.segment;
 import java.lang.reflect.Array;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.trimou.annotations.Internal;
 import org.trimou.engine.MustacheTagType;
@@ -25,10 +26,12 @@ import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.context.ExecutionContext;
 import org.trimou.engine.context.ValueWrapper;
 import org.trimou.engine.parser.Template;
+import org.trimou.engine.segment.ParallelIteration.ElementRenderer;
 import org.trimou.handlebars.HelperValidator;
 import org.trimou.lambda.Lambda;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 
 /**
  * Section segment.
@@ -57,6 +60,11 @@ import com.google.common.collect.Iterables;
  * <li>any other kind of object represents a nested context.</li>
  * </ul>
  *
+ * <p>
+ * Large iterations may be rendered in parallel, see
+ * {@link EngineConfigurationKey#PARALLEL_ITERATION_ENABLED}.
+ * </p>
+ *
  * @author Martin Kouba
  * @see Lambda
  * @see InvertedSectionSegment
@@ -69,13 +77,32 @@ public class SectionSegment extends AbstractSectionSegment implements
 
     private final HelperExecutionHandler helperHandler;
 
+    private final ValueProvider provider;
+
+    private final LambdaTemplates lambdaTemplates;
+
+    /**
+     * Zero if parallel iteration is disabled
+     */
+    private final int parallelIterationChunkSize;
+
     public SectionSegment(String text, Origin origin, List<Segment> segments) {
         super(text, origin, segments);
         this.helperHandler = isHandlebarsSupportEnabled() ? HelperExecutionHandler
                 .from(text, getEngine(), this) : null;
+        this.provider = helperHandler == null ? new ValueProvider(text,
+                getEngineConfiguration()) : null;
+        this.lambdaTemplates = helperHandler == null ? new LambdaTemplates(
+                this) : null;
         this.iterationMetaAlias = getEngineConfiguration()
                 .getStringPropertyValue(
                         EngineConfigurationKey.ITERATION_METADATA_ALIAS);
+        this.parallelIterationChunkSize = getEngineConfiguration()
+                .getBooleanPropertyValue(
+                        EngineConfigurationKey.PARALLEL_ITERATION_ENABLED) ? getEngineConfiguration()
+                .getIntegerPropertyValue(
+                        EngineConfigurationKey.PARALLEL_ITERATION_CHUNK_SIZE)
+                : 0;
     }
 
     public SegmentType getType() {
@@ -86,7 +113,7 @@ public class SectionSegment extends AbstractSectionSegment implements
         if (helperHandler != null) {
             return helperHandler.execute(appendable, context);
         } else {
-            ValueWrapper value = context.getValue(getText());
+            ValueWrapper value = provider.get(context);
             try {
                 if (value.isNull()) {
                     return appendable;
@@ -151,6 +178,10 @@ public class SectionSegment extends AbstractSectionSegment implements
             return;
         }
         Iterator iterator = iterable.iterator();
+        if (isParallel(size)) {
+            processParallel(appendable, context, iterator, size);
+            return;
+        }
         int i = 1;
         while (iterator.hasNext()) {
             processIteration(appendable,
@@ -165,6 +196,11 @@ public class SectionSegment extends AbstractSectionSegment implements
         if (length < 1) {
             return;
         }
+        if (isParallel(length)) {
+            processParallel(appendable, context,
+                    Iterators.forArray(toObjectArray(array, length)), length);
+            return;
+        }
         for (int i = 0; i < length; i++) {
             processIteration(appendable,
                     context.setContextObject(new ImmutableIterationMeta(
@@ -173,9 +209,43 @@ public class SectionSegment extends AbstractSectionSegment implements
         }
     }
 
-    private void processIteration(Appendable appendable,
+    private Appendable processIteration(Appendable appendable,
             ExecutionContext context, Object value) {
-        super.execute(appendable, context.setContextObject(value));
+        return super.execute(appendable, context.setContextObject(value));
+    }
+
+    private boolean isParallel(int size) {
+        return ParallelIteration.isApplicable(getEngineConfiguration()
+                .geExecutorService(), size, parallelIterationChunkSize);
+    }
+
+    private void processParallel(Appendable appendable,
+            final ExecutionContext context, Iterator<?> iterator,
+            final int size) {
+        ParallelIteration.execute(appendable, iterator, size,
+                parallelIterationChunkSize, getEngineConfiguration()
+                        .geExecutorService(), new ElementRenderer() {
+                    @Override
+                    public Appendable render(Appendable appendable,
+                            Object element, int index) {
+                        return processIteration(appendable, context
+                                .setContextObject(new ImmutableIterationMeta(
+                                        iterationMetaAlias, size, index)),
+                                element);
+                    }
+                });
+    }
+
+    private Object[] toObjectArray(Object array, int length) {
+        if (array instanceof Object[]) {
+            return (Object[]) array;
+        }
+        // Primitive array
+        Object[] elements = new Object[length];
+        for (int i = 0; i < length; i++) {
+            elements[i] = Array.get(array, i);
+        }
+        return elements;
     }
 
     private void processLambda(Appendable appendable, ExecutionContext context,
@@ -202,9 +272,7 @@ public class SectionSegment extends AbstractSectionSegment implements
 
         if (lambda.isReturnValueInterpolated()) {
             // Parse and interpolate the return value
-            Template temp = (Template) getEngine().compileMustache(
-                    Lambdas.constructLambdaOneoffTemplateName(this),
-                    returnValue);
+            Template temp = lambdaTemplates.get(returnValue);
             temp.getRootSegment().execute(appendable, context);
         } else {
             append(appendable, returnValue);
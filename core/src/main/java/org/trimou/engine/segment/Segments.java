@@ -21,6 +21,7 @@ import static org.trimou.engine.config.EngineConfigurationKey.TEMPLATE_CACHE_EXP
 import static org.trimou.util.Strings.LINE_SEPARATOR;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -67,6 +68,7 @@ final class Segments {
             Template template = cachedReference.get();
             if (template == null) {
                 synchronized (cachedReference) {
+                    template = cachedReference.get();
                     if (template == null) {
                         template = (Template) engine.getMustache(templateId);
                         cachedReference.set(template);
@@ -89,14 +91,16 @@ final class Segments {
         List<List<Segment>> lines = new ArrayList<List<Segment>>();
         List<Segment> currentLine = new ArrayList<Segment>();
 
-        for (Segment segment : container) {
-            if (!SegmentType.LINE_SEPARATOR.equals(segment.getType())) {
-                currentLine.add(segment);
-            } else {
-                // New line separator - flush the line
-                currentLine.add(segment);
-                lines.add(currentLine);
-                currentLine = new ArrayList<Segment>();
+        for (Segment containerSegment : container) {
+            for (Segment segment : splitLines(containerSegment)) {
+                if (!SegmentType.LINE_SEPARATOR.equals(segment.getType())) {
+                    currentLine.add(segment);
+                } else {
+                    // New line separator - flush the line
+                    currentLine.add(segment);
+                    lines.add(currentLine);
+                    currentLine = new ArrayList<Segment>();
+                }
             }
         }
         // Add the last line manually - there is no line separator to trigger
@@ -119,17 +123,21 @@ final class Segments {
             currentLine.add(container);
         }
 
-        for (Segment segment : container) {
-            if (segment instanceof AbstractContainerSegment) {
+        for (Segment containerSegment : container) {
+            if (containerSegment instanceof AbstractContainerSegment) {
                 currentLine = readSegmentLines(lines, currentLine,
-                        (AbstractContainerSegment) segment);
-            } else if (!SegmentType.LINE_SEPARATOR.equals(segment.getType())) {
-                currentLine.add(segment);
-            } else {
-                // New line separator - flush the line
-                currentLine.add(segment);
-                lines.add(currentLine);
-                currentLine = new ArrayList<Segment>();
+                        (AbstractContainerSegment) containerSegment);
+                continue;
+            }
+            for (Segment segment : splitLines(containerSegment)) {
+                if (!SegmentType.LINE_SEPARATOR.equals(segment.getType())) {
+                    currentLine.add(segment);
+                } else {
+                    // New line separator - flush the line
+                    currentLine.add(segment);
+                    lines.add(currentLine);
+                    currentLine = new ArrayList<Segment>();
+                }
             }
         }
 
@@ -140,6 +148,51 @@ final class Segments {
         return currentLine;
     }
 
+    /**
+     * A text segment may contain line separators if
+     * {@link org.trimou.engine.config.EngineConfigurationKey#MERGE_TEXT_SEGMENTS}
+     * is enabled. Such a segment is split into text and line separator
+     * segments.
+     *
+     * @param segment
+     * @return the list of segments
+     */
+    static List<Segment> splitLines(Segment segment) {
+        if (!SegmentType.TEXT.equals(segment.getType())) {
+            return Collections.singletonList(segment);
+        }
+        String text = segment.getText();
+        List<Segment> segments = null;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\n' && c != '\r') {
+                continue;
+            }
+            if (segments == null) {
+                segments = new ArrayList<Segment>();
+            }
+            if (start < i) {
+                segments.add(new TextSegment(text.substring(start, i),
+                        segment.getOrigin()));
+            }
+            int end = (c == '\r' && i + 1 < text.length() && text
+                    .charAt(i + 1) == '\n') ? i + 2 : i + 1;
+            segments.add(new LineSeparatorSegment(text.substring(i, end),
+                    segment.getOrigin()));
+            start = end;
+            i = end - 1;
+        }
+        if (segments == null) {
+            return Collections.singletonList(segment);
+        }
+        if (start < text.length()) {
+            segments.add(new TextSegment(text.substring(start),
+                    segment.getOrigin()));
+        }
+        return segments;
+    }
+
     /**
      *
      * @param container
@@ -26,8 +26,11 @@ import org.trimou.engine.context.ExecutionContext;
 @Internal
 public class TextSegment extends AbstractSegment {
 
+    private final EncodedText encodedText;
+
     public TextSegment(String text, Origin origin) {
         super(text, origin);
+        this.encodedText = new EncodedText(text);
     }
 
     public SegmentType getType() {
@@ -35,7 +38,7 @@ public class TextSegment extends AbstractSegment {
     }
 
     public Appendable execute(Appendable appendable, ExecutionContext context) {
-        append(appendable, getText());
+        encodedText.appendTo(appendable);
         return appendable;
     }
 
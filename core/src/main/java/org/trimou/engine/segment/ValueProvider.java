@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.segment;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.trimou.engine.config.Configuration;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.context.ExecutionContext;
+import org.trimou.engine.context.HintCache;
+import org.trimou.engine.context.ValueWrapper;
+
+/**
+ * Provides the value for a key known at compile time, e.g. the key of a
+ * variable or a section tag or a helper parameter. The key is only split once
+ * and the resolver hints are cached per call site.
+ *
+ * @author Martin Kouba
+ */
+final class ValueProvider {
+
+    private final String key;
+
+    private final String[] keyParts;
+
+    /**
+     * The hints are currently only used to skip the resolver chain for the
+     * first part of a key, e.g. <code>foo</code> for <code>{{foo.bar}}</code>
+     *
+     * @see EngineConfigurationKey#RESOLVER_HINTS_ENABLED
+     */
+    private final HintCache hintCache;
+
+    /**
+     *
+     * @param key
+     * @param configuration
+     */
+    ValueProvider(String key, Configuration configuration) {
+        this.key = key;
+        List<String> parts = new ArrayList<String>();
+        for (Iterator<String> iterator = configuration.getKeySplitter().split(
+                key); iterator.hasNext();) {
+            parts.add(iterator.next());
+        }
+        this.keyParts = parts.toArray(new String[parts.size()]);
+        this.hintCache = configuration
+                .getBooleanPropertyValue(EngineConfigurationKey.RESOLVER_HINTS_ENABLED) ? new HintCache()
+                : null;
+    }
+
+    /**
+     *
+     * @param context
+     * @return the value wrapper, the client is responsible for releasing the
+     *         wrapper
+     */
+    ValueWrapper get(ExecutionContext context) {
+        return context.getValue(key, keyParts, hintCache);
+    }
+
+    String getKey() {
+        return key;
+    }
+
+}
@@ -15,18 +15,17 @@
  */
 package org.trimou.engine.segment;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.concurrent.atomic.AtomicReference;
+import java.io.IOException;
 
 import org.trimou.annotations.Internal;
 import org.trimou.engine.MustacheTagType;
-import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.context.ExecutionContext;
 import org.trimou.engine.context.ValueWrapper;
 import org.trimou.engine.parser.Template;
-import org.trimou.engine.resolver.EnhancedResolver.Hint;
+import org.trimou.engine.text.StreamingTextSupport;
 import org.trimou.engine.text.TextSupport;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
 import org.trimou.lambda.Lambda;
 import org.trimou.util.Strings;
 
@@ -44,15 +43,9 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
 
     private final TextSupport textSupport;
 
-    private final String[] keyParts;
+    private final ValueProvider provider;
 
-    /**
-     * The hint is currently only used to skip the resolver chain for a simple
-     * value reference - a key with single part, i.e. {{this}}
-     *
-     * @see EngineConfigurationKey#RESOLVER_HINTS_ENABLED
-     */
-    private final AtomicReference<Hint> hint;
+    private final LambdaTemplates lambdaTemplates;
 
     /**
      *
@@ -67,22 +60,12 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
                 .from(text, getEngine(), this) : null;
         if (helperHandler == null) {
             this.textSupport = getEngineConfiguration().getTextSupport();
-            ArrayList<String> parts = new ArrayList<String>();
-            for (Iterator<String> iterator = getEngineConfiguration()
-                    .getKeySplitter().split(text); iterator.hasNext();) {
-                parts.add(iterator.next());
-            }
-            this.keyParts = parts.toArray(new String[parts.size()]);
-            if (getEngineConfiguration().getBooleanPropertyValue(
-                    EngineConfigurationKey.RESOLVER_HINTS_ENABLED)) {
-                this.hint = new AtomicReference<Hint>();
-            } else {
-                this.hint = null;
-            }
+            this.provider = new ValueProvider(text, getEngineConfiguration());
+            this.lambdaTemplates = new LambdaTemplates(this);
         } else {
             this.textSupport = null;
-            this.keyParts = null;
-            this.hint = null;
+            this.provider = null;
+            this.lambdaTemplates = null;
         }
     }
 
@@ -98,7 +81,7 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
         if (helperHandler != null) {
             return helperHandler.execute(appendable, context);
         } else {
-            ValueWrapper value = context.getValue(getText(), keyParts, hint);
+            ValueWrapper value = provider.get(context);
             try {
                 if (value.isNull()) {
                     Object replacement = getEngineConfiguration()
@@ -107,9 +90,6 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
                         processValue(appendable, context, replacement);
                     }
                 } else {
-                    if (hint != null && value.getHint() != null) {
-                        hint.compareAndSet(null, value.getHint());
-                    }
                     processValue(appendable, context, value.get());
                 }
             } finally {
@@ -148,7 +128,18 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
     }
 
     private void writeValue(Appendable appendable, String text) {
-        append(appendable, unescape ? text : textSupport.escapeHtml(text));
+        if (unescape) {
+            append(appendable, text);
+        } else if (textSupport instanceof StreamingTextSupport) {
+            try {
+                ((StreamingTextSupport) textSupport).appendEscapedHtml(text,
+                        appendable);
+            } catch (IOException e) {
+                throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+            }
+        } else {
+            append(appendable, textSupport.escapeHtml(text));
+        }
     }
 
     private void processLambda(Appendable appendable, ExecutionContext context,
@@ -168,9 +159,7 @@ public class ValueSegment extends AbstractSegment implements HelperAwareSegment
             if (lambda.isReturnValueInterpolated()) {
                 // Parse and interpolate the return value
                 StringBuilder interpolated = new StringBuilder();
-                Template temp = (Template) getEngine().compileMustache(
-                        Lambdas.constructLambdaOneoffTemplateName(this),
-                        returnValue);
+                Template temp = lambdaTemplates.get(returnValue);
                 temp.getRootSegment().execute(interpolated, context);
                 writeValue(appendable, interpolated.toString());
             } else {
@@ -17,28 +17,109 @@ package org.trimou.engine.text;
 
 import java.io.IOException;
 
-import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.text.translate.EntityArrays;
 import org.trimou.engine.config.AbstractConfigurationAware;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
-import org.trimou.util.StringBuilderWriter;
 
 /**
+ * The default text support escapes the same characters as
+ * {@link org.apache.commons.lang3.StringEscapeUtils#ESCAPE_HTML3}. The
+ * replacements are looked up in a table indexed by the character and unchanged
+ * runs of the input are written directly to the target appendable.
  *
  * @author Martin Kouba
  */
 class DefaultTextSupport extends AbstractConfigurationAware implements
-        TextSupport {
+        StreamingTextSupport {
+
+    /**
+     * The replacement for each char lower than the table length, or
+     * <code>null</code> if the char is not escaped
+     */
+    private static final String[] REPLACEMENTS = initReplacements();
 
     @Override
     public String escapeHtml(String input) {
-        final StringBuilderWriter writer = new StringBuilderWriter(input.length());
+        int idx = indexOfEscapable(input, 0);
+        if (idx == -1) {
+            // Nothing to escape
+            return input;
+        }
+        StringBuilder builder = new StringBuilder(input.length() + 16);
         try {
-            StringEscapeUtils.ESCAPE_HTML3.translate(input, writer);
+            appendEscaped(input, idx, builder);
         } catch (IOException e) {
+            // Never happens
             throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
         }
-        return writer.toString();
+        return builder.toString();
+    }
+
+    @Override
+    public void appendEscapedHtml(CharSequence input, Appendable appendable)
+            throws IOException {
+        int idx = indexOfEscapable(input, 0);
+        if (idx == -1) {
+            appendable.append(input);
+        } else {
+            appendEscaped(input, idx, appendable);
+        }
+    }
+
+    /**
+     *
+     * @param input
+     * @param idx
+     *            The index of the first escapable char
+     * @param appendable
+     * @throws IOException
+     */
+    private void appendEscaped(CharSequence input, int idx,
+            Appendable appendable) throws IOException {
+        int start = 0;
+        int length = input.length();
+        while (idx != -1) {
+            if (idx > start) {
+                appendable.append(input, start, idx);
+            }
+            appendable.append(REPLACEMENTS[input.charAt(idx)]);
+            start = idx + 1;
+            idx = indexOfEscapable(input, start);
+        }
+        if (start < length) {
+            appendable.append(input, start, length);
+        }
+    }
+
+    private int indexOfEscapable(CharSequence input, int start) {
+        for (int i = start; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c < REPLACEMENTS.length && REPLACEMENTS[c] != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String[] initReplacements() {
+        String[][] basic = EntityArrays.BASIC_ESCAPE();
+        String[][] iso = EntityArrays.ISO8859_1_ESCAPE();
+        int max = 0;
+        for (String[] entity : basic) {
+            max = Math.max(max, entity[0].charAt(0));
+        }
+        for (String[] entity : iso) {
+            max = Math.max(max, entity[0].charAt(0));
+        }
+        String[] replacements = new String[max + 1];
+        for (String[] entity : basic) {
+            replacements[entity[0].charAt(0)] = entity[1];
+        }
+        for (String[] entity : iso) {
+            replacements[entity[0].charAt(0)] = entity[1];
+        }
+        return replacements;
     }
 
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.engine.text;
+
+import java.io.IOException;
+
+/**
+ * A streaming text support is able to write the escaped text directly to the
+ * target {@link Appendable}, i.e. without the need to build an intermediate
+ * {@link String}. If the configured {@link TextSupport} implements this
+ * interface, the engine prefers {@link #appendEscapedHtml(CharSequence,
+ * Appendable)} to {@link #escapeHtml(String)}.
+ *
+ * @author Martin Kouba
+ * @since 1.8.1
+ */
+public interface StreamingTextSupport extends TextSupport {
+
+    /**
+     * Append the escaped input to the given appendable. The result must be the
+     * same as if {@link #escapeHtml(String)} was appended.
+     *
+     * @param input
+     * @param appendable
+     * @throws IOException
+     */
+    public void appendEscapedHtml(CharSequence input, Appendable appendable)
+            throws IOException;
+
+}
@@ -15,10 +15,15 @@
  */
 package org.trimou.handlebars;
 
+import java.io.IOException;
+
 import org.trimou.engine.MustacheTagType;
 import org.trimou.engine.config.AbstractConfigurationAware;
 import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.text.StreamingTextSupport;
 import org.trimou.engine.text.TextSupport;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
 
 /**
  *
@@ -71,6 +76,13 @@ public abstract class AbstractHelper extends AbstractConfigurationAware
     protected void append(Options options, CharSequence sequence) {
         if (textSupport == null || isUnescapeVariable(options)) {
             options.append(sequence);
+        } else if (textSupport instanceof StreamingTextSupport) {
+            try {
+                ((StreamingTextSupport) textSupport).appendEscapedHtml(
+                        sequence, options.getAppendable());
+            } catch (IOException e) {
+                throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+            }
         } else {
             options.append(textSupport.escapeHtml(sequence.toString()));
         }
@@ -17,6 +17,7 @@ package org.trimou.handlebars;
 
 import static org.trimou.handlebars.OptionsHashKeys.APPLY;
 import static org.trimou.handlebars.OptionsHashKeys.AS;
+import static org.trimou.handlebars.OptionsHashKeys.PARALLEL;
 
 import java.lang.reflect.Array;
 import java.util.Iterator;
@@ -24,12 +25,15 @@ import java.util.Set;
 
 import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.segment.ImmutableIterationMeta;
+import org.trimou.engine.segment.ParallelIteration;
+import org.trimou.engine.segment.ParallelIteration.ElementRenderer;
 import org.trimou.exception.MustacheException;
 import org.trimou.exception.MustacheProblem;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 
 /**
  * <code>
@@ -64,6 +68,18 @@ import com.google.common.collect.Iterables;
  * {{/each}}
  * </code>
  *
+ * <p>
+ * Large iterations may be rendered in parallel, see
+ * {@link EngineConfigurationKey#PARALLEL_ITERATION_ENABLED}. The global
+ * setting can be overriden for a specific helper:
+ * </p>
+ *
+ * <code>
+ * {{#each items parallel="true"}}
+ *  {{name}}
+ * {{/each}}
+ * </code>
+ *
  * @see Function
  * @author Martin Kouba
  */
@@ -73,11 +89,19 @@ public class EachHelper extends BasicSectionHelper {
 
     private String iterationMetadataAlias;
 
+    private boolean parallelIterationEnabled;
+
+    private int parallelIterationChunkSize;
+
     @Override
     public void init() {
         super.init();
         this.iterationMetadataAlias = configuration
                 .getStringPropertyValue(EngineConfigurationKey.ITERATION_METADATA_ALIAS);
+        this.parallelIterationEnabled = configuration
+                .getBooleanPropertyValue(EngineConfigurationKey.PARALLEL_ITERATION_ENABLED);
+        this.parallelIterationChunkSize = configuration
+                .getIntegerPropertyValue(EngineConfigurationKey.PARALLEL_ITERATION_CHUNK_SIZE);
     }
 
     @SuppressWarnings("rawtypes")
@@ -103,7 +127,7 @@ public class EachHelper extends BasicSectionHelper {
 
     @Override
     protected Optional<Set<String>> getSupportedHashKeys() {
-        return Optional.<Set<String>> of(ImmutableSet.of(APPLY, AS));
+        return Optional.<Set<String>> of(ImmutableSet.of(APPLY, AS, PARALLEL));
     }
 
     @SuppressWarnings("rawtypes")
@@ -113,6 +137,10 @@ public class EachHelper extends BasicSectionHelper {
             return;
         }
         final Iterator iterator = iterable.iterator();
+        if (isParallel(options, size)) {
+            processParallel(iterator, size, options);
+            return;
+        }
         int i = 1;
         while (iterator.hasNext()) {
             nextElement(options, iterator.next(), size, i++,
@@ -125,6 +153,14 @@ public class EachHelper extends BasicSectionHelper {
         if (length < 1) {
             return;
         }
+        if (isParallel(options, length)) {
+            Object[] elements = new Object[length];
+            for (int i = 0; i < length; i++) {
+                elements[i] = Array.get(array, i);
+            }
+            processParallel(Iterators.forArray(elements), length, options);
+            return;
+        }
         for (int i = 0; i < length; i++) {
             nextElement(options, Array.get(array, i), length, i + 1,
                     initFunction(options), initValueAlias(options));
@@ -154,6 +190,56 @@ public class EachHelper extends BasicSectionHelper {
         }
     }
 
+    private boolean isParallel(Options options, int size) {
+        Object parallel = getHashValue(options, PARALLEL);
+        if (parallel != null) {
+            if (!Boolean.valueOf(parallel.toString())) {
+                return false;
+            }
+            if (configuration.geExecutorService() == null) {
+                throw new MustacheException(
+                        MustacheProblem.RENDER_HELPER_INVALID_OPTIONS,
+                        "ExecutorService must be set in order to use parallel iteration [%s]",
+                        options.getTagInfo());
+            }
+        } else if (!parallelIterationEnabled) {
+            return false;
+        }
+        return ParallelIteration.isApplicable(
+                configuration.geExecutorService(), size,
+                parallelIterationChunkSize);
+    }
+
+    private void processParallel(Iterator<?> iterator, final int size,
+            final Options options) {
+        final Function function = initFunction(options);
+        final String valueAlias = initValueAlias(options);
+        ParallelIteration.execute(options.getAppendable(), iterator, size,
+                parallelIterationChunkSize, configuration.geExecutorService(),
+                new ElementRenderer() {
+                    @Override
+                    public Appendable render(Appendable appendable,
+                            Object value, int index) {
+                        if (function != null) {
+                            value = function.apply(value);
+                            if (SKIP_RESULT.equals(value)) {
+                                return appendable;
+                            }
+                        }
+                        if (valueAlias != null) {
+                            return options.fn(appendable,
+                                    new ImmutableIterationMeta(
+                                            iterationMetadataAlias, size,
+                                            index, valueAlias, value));
+                        }
+                        return options.fn(appendable,
+                                new ImmutableIterationMeta(
+                                        iterationMetadataAlias, size, index),
+                                value);
+                    }
+                });
+    }
+
     private Function initFunction(Options options) {
         Object function = getHashValue(options, APPLY);
         if (function == null) {
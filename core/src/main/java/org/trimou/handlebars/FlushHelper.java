@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.handlebars;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Set;
+
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
+
+import com.google.common.base.Optional;
+
+/**
+ * Flushes the output rendered so far, e.g. in order to send the head of an
+ * HTML page to the client as soon as possible:
+ *
+ * <code>
+ * {{> head}}
+ * {{flush}}
+ * </code>
+ *
+ * <p>
+ * The helper has no effect if the current output is not {@link Flushable},
+ * e.g. if rendering into a {@link StringBuilder}, inside an async block or a
+ * section rendered in parallel.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @since 1.8.1
+ * @see org.trimou.Mustache#render(java.io.OutputStream,
+ *      java.nio.charset.Charset, Object)
+ */
+public class FlushHelper extends BasicValueHelper {
+
+    @Override
+    public void execute(Options options) {
+        if (options.getAppendable() instanceof Flushable) {
+            try {
+                ((Flushable) options.getAppendable()).flush();
+            } catch (IOException e) {
+                throw new MustacheException(MustacheProblem.RENDER_IO_ERROR, e);
+            }
+        }
+    }
+
+    @Override
+    protected int numberOfRequiredParameters() {
+        return 0;
+    }
+
+    @Override
+    protected Optional<Set<String>> getSupportedHashKeys() {
+        return NO_SUPPORTED_HASH_KEYS;
+    }
+
+}
@@ -88,6 +88,8 @@ public final class HelpersBuilder {
 
     public static final String ASYNC = "async";
 
+    public static final String FLUSH = "flush";
+
     private final ImmutableMap.Builder<String, Helper> builder;
 
     private HelpersBuilder() {
@@ -350,6 +352,17 @@ public final class HelpersBuilder {
         return this;
     }
 
+    /**
+     * Add an instance of {@link FlushHelper}.
+     *
+     * @return self
+     * @since 1.8.1
+     */
+    public HelpersBuilder addFlush() {
+        builder.put(FLUSH, new FlushHelper());
+        return this;
+    }
+
 
     /**
      *
@@ -384,6 +397,7 @@ public final class HelpersBuilder {
         addEval();
         addNumExpr();
         addAsync();
+        addFlush();
         return this;
     }
 
@@ -109,6 +109,22 @@ public interface Options extends HelperDefinition {
      */
     void fn(Appendable appendable);
 
+    /**
+     * Proceed with execution, i.e. execute the block, with the given context
+     * objects pushed on the context stack. Unlike {@link #push(Object)} this
+     * method does not modify the state of the options. Therefore, it may be
+     * invoked concurrently from multiple threads, as long as the helper does
+     * not modify the context stack at the same time.
+     *
+     * @param appendable
+     *            The appendable to append the rendered block to
+     * @param contextObjects
+     *            The context objects, the last one is on the top of the stack
+     * @return the appendable the subsequent output should be appended to
+     * @since 1.8.1
+     */
+    Appendable fn(Appendable appendable, Object... contextObjects);
+
     /**
      * The key is first processed by the {@link KeySplitter} and then processed
      * by the resolver chain.
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.util;
+
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+import org.trimou.annotations.Internal;
+
+/**
+ * A reader backed by an already decoded {@link CharBuffer}. Consumers aware of
+ * this class may obtain the remaining characters at once and avoid
+ * intermediate copies - see also {@link #readAll()}.
+ *
+ * @author Martin Kouba
+ */
+@Internal
+public class CharBufferReader extends Reader {
+
+    private final CharBuffer buffer;
+
+    /**
+     *
+     * @param buffer
+     */
+    public CharBufferReader(CharBuffer buffer) {
+        Checker.checkArgumentNotNull(buffer);
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int length = Math.min(len, buffer.remaining());
+        buffer.get(cbuf, off, length);
+        return length;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() : -1;
+    }
+
+    @Override
+    public long skip(long n) {
+        int length = (int) Math.min(Math.max(n, 0), buffer.remaining());
+        buffer.position(buffer.position() + length);
+        return length;
+    }
+
+    @Override
+    public boolean ready() {
+        return true;
+    }
+
+    /**
+     * Read all the remaining characters.
+     *
+     * @return a buffer sharing the content of the underlying buffer
+     */
+    public CharBuffer readAll() {
+        CharBuffer remaining = buffer.slice();
+        buffer.position(buffer.limit());
+        return remaining;
+    }
+
+    @Override
+    public void close() {
+        // No-op
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.trimou.annotations.Internal;
+
+/**
+ * An {@link Appendable} which encodes the appended characters with the given
+ * charset and writes the bytes to the underlying {@link OutputStream}. Unlike
+ * {@link java.io.OutputStreamWriter} it also accepts content which is already
+ * encoded, see {@link #write(byte[])}. This construct is not thread-safe.
+ *
+ * <p>
+ * The output is buffered. {@link #flushBuffer()} or {@link #flush()} must be
+ * called in order to write the remaining bytes. Note that the underlying stream
+ * is only flushed by {@link #flush()} and never closed.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @since 1.8.1
+ */
+@Internal
+public class OutputStreamAppendable implements Appendable, Flushable {
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Must be able to hold any encoded surrogate pair
+     */
+    public static final int MIN_BUFFER_SIZE = 16;
+
+    private static final String NULL = "null";
+
+    private final OutputStream out;
+
+    private final Charset charset;
+
+    private final CharsetEncoder encoder;
+
+    private final byte[] buffer;
+
+    private final ByteBuffer byteBuffer;
+
+    private boolean hasPendingChar;
+
+    private char pendingChar;
+
+    /**
+     *
+     * @param out
+     * @param charset
+     */
+    public OutputStreamAppendable(OutputStream out, Charset charset) {
+        this(out, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     *
+     * @param out
+     * @param charset
+     * @param bufferSize
+     */
+    public OutputStreamAppendable(OutputStream out, Charset charset,
+            int bufferSize) {
+        this(out, charset, newBuffer(bufferSize));
+    }
+
+    /**
+     * The given buffer may be reused once this appendable is not used anymore,
+     * i.e. after {@link #flushBuffer()} or {@link #flush()} was called.
+     *
+     * @param out
+     * @param charset
+     * @param buffer
+     */
+    public OutputStreamAppendable(OutputStream out, Charset charset,
+            byte[] buffer) {
+        Checker.checkArgumentsNotNull(out, charset, buffer);
+        checkArgument(buffer.length >= MIN_BUFFER_SIZE,
+                "Buffer size must be at least %s", MIN_BUFFER_SIZE);
+        this.out = out;
+        this.charset = charset;
+        // Follow the behavior of OutputStreamWriter
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.buffer = buffer;
+        this.byteBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        encode(CharBuffer.wrap(csq != null ? csq : NULL));
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end)
+            throws IOException {
+        encode(CharBuffer.wrap(csq != null ? csq : NULL, start, end));
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        encode(CharBuffer.wrap(new char[] { c }));
+        return this;
+    }
+
+    /**
+     * Write the bytes which were encoded with the charset of this appendable.
+     *
+     * @param bytes
+     * @throws IOException
+     * @see #getCharset()
+     */
+    public void write(byte[] bytes) throws IOException {
+        encodePendingChar();
+        if (bytes.length > byteBuffer.remaining()) {
+            writeBuffer();
+            if (bytes.length > buffer.length) {
+                // Do not copy large chunks
+                out.write(bytes);
+                return;
+            }
+        }
+        byteBuffer.put(bytes);
+    }
+
+    /**
+     * Write all the buffered bytes to the underlying stream and flush the
+     * stream.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Write all the buffered bytes to the underlying stream. The underlying
+     * stream is not flushed.
+     *
+     * @throws IOException
+     */
+    public void flushBuffer() throws IOException {
+        encodePendingChar();
+        writeBuffer();
+    }
+
+    /**
+     *
+     * @return the charset used to encode the characters
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    private static byte[] newBuffer(int bufferSize) {
+        checkArgument(bufferSize >= MIN_BUFFER_SIZE,
+                "Buffer size must be at least %s", MIN_BUFFER_SIZE);
+        return new byte[bufferSize];
+    }
+
+    private void encode(CharBuffer in) throws IOException {
+        while (hasPendingChar && in.hasRemaining()) {
+            // A high surrogate was the last char appended
+            hasPendingChar = false;
+            encodeChars(CharBuffer.wrap(new char[] { pendingChar, in.get() }));
+        }
+        encodeChars(in);
+    }
+
+    private void encodeChars(CharBuffer in) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(in, byteBuffer, false);
+            if (result.isOverflow()) {
+                writeBuffer();
+            } else {
+                // Underflow - the remaining char may only be a high surrogate
+                if (in.hasRemaining()) {
+                    pendingChar = in.get();
+                    hasPendingChar = true;
+                }
+                break;
+            }
+        }
+    }
+
+    private void encodePendingChar() throws IOException {
+        if (!hasPendingChar) {
+            return;
+        }
+        hasPendingChar = false;
+        CharBuffer in = CharBuffer.wrap(new char[] { pendingChar });
+        while (encoder.encode(in, byteBuffer, true).isOverflow()) {
+            writeBuffer();
+        }
+        encoder.reset();
+    }
+
+    private void writeBuffer() throws IOException {
+        if (byteBuffer.position() > 0) {
+            out.write(buffer, 0, byteBuffer.position());
+            byteBuffer.clear();
+        }
+    }
+
+}
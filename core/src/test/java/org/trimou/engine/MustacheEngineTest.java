@@ -3,7 +3,9 @@ package org.trimou.engine;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.Reader;
 import java.io.StringReader;
@@ -15,7 +17,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -28,6 +35,7 @@ import org.trimou.engine.locator.AbstractTemplateLocator;
 import org.trimou.engine.locator.MapTemplateLocator;
 import org.trimou.engine.locator.TemplateLocator;
 import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
 import org.trimou.lambda.Lambda;
 import org.trimou.lambda.SpecCompliantLambda;
 
@@ -192,6 +200,69 @@ public class MustacheEngineTest extends AbstractEngineTest {
         assertEquals("fooLocate", sequence.get(1));
     }
 
+    @Test
+    public void testParallelPrecompilation() {
+
+        final Map<String, String> templates = new HashMap<String, String>();
+        for (int i = 0; i < 100; i++) {
+            templates.put("template" + i, "{{foo}} {{>partial}} " + i);
+        }
+        templates.put("partial", "{{bar}}");
+        final ConcurrentMap<String, AtomicInteger> located = new ConcurrentHashMap<String, AtomicInteger>();
+        TemplateLocator locator = new MapTemplateLocator(templates) {
+            @Override
+            public Reader locate(String templateId) {
+                located.putIfAbsent(templateId, new AtomicInteger());
+                located.get(templateId).incrementAndGet();
+                return super.locate(templateId);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            MustacheEngine engine = MustacheEngineBuilder
+                    .newBuilder()
+                    .setExecutorService(executor)
+                    .setProperty(
+                            EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES,
+                            true)
+                    .setProperty(
+                            EngineConfigurationKey.PARALLEL_PRECOMPILATION_ENABLED,
+                            true).addTemplateLocator(locator).build();
+            assertEquals(templates.size(), located.size());
+            for (AtomicInteger count : located.values()) {
+                assertEquals(1, count.get());
+            }
+            assertEquals("1 2 5", engine.getMustache("template5")
+                    .render(ImmutableMap.of("foo", 1, "bar", 2)));
+
+            templates.put("invalid1", "{{#foo}}");
+            templates.put("invalid2", "{{/foo}}");
+            try {
+                MustacheEngineBuilder
+                        .newBuilder()
+                        .setExecutorService(executor)
+                        .setProperty(
+                                EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES,
+                                true)
+                        .setProperty(
+                                EngineConfigurationKey.PARALLEL_PRECOMPILATION_ENABLED,
+                                true)
+                        .addTemplateLocator(new MapTemplateLocator(templates))
+                        .build();
+                fail("Compilation failures not reported");
+            } catch (MustacheException e) {
+                assertEquals(MustacheProblem.TEMPLATE_LOADING_ERROR,
+                        e.getCode());
+                assertTrue(e.getMessage().contains("invalid1"));
+                assertTrue(e.getMessage().contains("invalid2"));
+                assertEquals(2, e.getSuppressed().length);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testIterationMetadataAlias() {
         assertEquals(
@@ -253,6 +324,75 @@ public class MustacheEngineTest extends AbstractEngineTest {
         assertTrue(isCloseInvoked.get());
     }
 
+    @Test
+    public void testInvalidateTemplate() {
+        Map<String, String> templates = new HashMap<String, String>();
+        templates.put("partial", "P1");
+        templates.put("page", "{{>partial}}!");
+        templates.put("layout", "<{{$body}}{{/body}}>");
+        templates.put("extending",
+                "{{<layout}}{{$body}}{{>page}}{{/body}}{{/layout}}");
+        templates.put("other", "other");
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addTemplateLocator(new MapTemplateLocator(templates)).build();
+
+        assertEquals("P1!", engine.getMustache("page").render(null));
+        assertEquals("<P1!>", engine.getMustache("extending").render(null));
+        Mustache layout = engine.getMustache("layout");
+        Mustache other = engine.getMustache("other");
+        assertEquals("P1", engine.getMustacheSource("partial"));
+
+        templates.put("partial", "P2");
+        // Nothing is invalidated yet
+        assertEquals("P1!", engine.getMustache("page").render(null));
+        assertEquals("P1", engine.getMustacheSource("partial"));
+
+        engine.invalidateTemplate("partial");
+        assertEquals("P2", engine.getMustacheSource("partial"));
+        assertEquals("P2!", engine.getMustache("page").render(null));
+        assertEquals("<P2!>", engine.getMustache("extending").render(null));
+        // Templates which do not depend on the partial are not recompiled
+        assertTrue(layout == engine.getMustache("layout"));
+        assertTrue(other == engine.getMustache("other"));
+
+        templates.put("layout", "[{{$body}}{{/body}}]");
+        engine.invalidateTemplate("layout");
+        assertEquals("[P2!]", engine.getMustache("extending").render(null));
+        assertTrue(other == engine.getMustache("other"));
+    }
+
+    @Test
+    public void testReloadTemplate() {
+        Map<String, String> templates = new HashMap<String, String>();
+        templates.put("partial", "P1");
+        templates.put("page", "{{>partial}}!");
+        templates.put("other", "other");
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addTemplateLocator(new MapTemplateLocator(templates)).build();
+
+        assertEquals("P1!", engine.getMustache("page").render(null));
+        Mustache other = engine.getMustache("other");
+
+        templates.put("partial", "P2");
+        engine.reloadTemplate("partial");
+        assertEquals("P2", engine.getMustache("partial").render(null));
+        assertEquals("P2!", engine.getMustache("page").render(null));
+        assertTrue(other == engine.getMustache("other"));
+
+        // Compilation failure - the previous version is still used
+        templates.put("partial", "{{#foo}}");
+        try {
+            engine.reloadTemplate("partial");
+            fail();
+        } catch (MustacheException expected) {
+        }
+        assertEquals("P2!", engine.getMustache("page").render(null));
+
+        templates.remove("partial");
+        engine.reloadTemplate("partial");
+        assertNull(engine.getMustache("partial"));
+    }
+
     @Test
     public void testHelloWorld() {
         String data = "Hello world!";
@@ -1,6 +1,7 @@
 package org.trimou.engine.cache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -16,6 +17,8 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.trimou.AbstractEngineTest;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.resolver.ReflectionResolver;
 
 /**
  * All {@link ComputingCache} implementations should pass this naive concurrency
@@ -153,4 +156,82 @@ public class ComputingCacheTest extends AbstractEngineTest {
         assertTrue(result.getCache().size() < actions);
     }
 
+    @Test
+    public void testStats() {
+        ComputingCache<String, String> cache = engine.getConfiguration()
+                .getComputingCacheFactory()
+                .create("test", new ComputingCache.Function<String, String>() {
+                    @Override
+                    public String compute(String key) {
+                        return key.toUpperCase();
+                    }
+                }, null, null, null);
+        cache.get("foo");
+        cache.get("foo");
+        cache.get("bar");
+        assertTrue(cache instanceof StatsRecordingComputingCache);
+        CacheStats stats = ((StatsRecordingComputingCache<String, String>) cache)
+                .stats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(2, stats.getLoadSuccessCount());
+        assertEquals(0, stats.getLoadExceptionCount());
+        assertEquals(1.0 / 3, stats.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void testRegistry() {
+        ComputingCacheRegistry registry = engine.getConfiguration()
+                .getComputingCacheRegistry();
+        // Template cache and template source cache
+        assertEquals(2,
+                registry.getCaches(MustacheEngine.COMPUTING_CACHE_CONSUMER_ID)
+                        .size());
+        assertEquals(1,
+                registry.getCaches(ReflectionResolver.COMPUTING_CACHE_CONSUMER_ID)
+                        .size());
+        assertTrue(registry.getCaches("test").isEmpty());
+        ComputingCache<Long, String> cache = engine.getConfiguration()
+                .getComputingCacheFactory()
+                .create("test", new ComputingCache.Function<Long, String>() {
+                    @Override
+                    public String compute(Long key) {
+                        return "" + key;
+                    }
+                }, null, null, null);
+        assertEquals(1, registry.getCaches("test").size());
+        assertSame(cache, registry.getCaches("test").get(0));
+        assertTrue(registry.getConsumerIds().contains("test"));
+        assertEquals(1, registry.getStats("test").size());
+    }
+
+    @Test
+    public void testRegistryCollectedCaches() throws InterruptedException {
+        ComputingCacheRegistry registry = engine.getConfiguration()
+                .getComputingCacheRegistry();
+        ComputingCacheFactory factory = engine.getConfiguration()
+                .getComputingCacheFactory();
+        ComputingCache.Function<String, String> function = new ComputingCache.Function<String, String>() {
+            @Override
+            public String compute(String key) {
+                return key;
+            }
+        };
+        ComputingCache<String, String> first = factory.create("gc", function,
+                null, null, null);
+        for (int i = 0; i < 100; i++) {
+            factory.create("gc", function, null, null, null);
+        }
+        ComputingCache<String, String> last = factory.create("gc", function,
+                null, null, null);
+        for (int i = 0; i < 50 && registry.getCaches("gc").size() > 2; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        List<ComputingCache<?, ?>> caches = registry.getCaches("gc");
+        assertEquals(2, caches.size());
+        assertSame(first, caches.get(0));
+        assertSame(last, caches.get(1));
+    }
+
 }
@@ -1,6 +1,7 @@
 package org.trimou.engine.cache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.util.HashMap;
 import java.util.Iterator;
@@ -62,6 +63,33 @@ public class CustomComputingCacheFactoryTest extends AbstractTest {
         assertEquals("10",engine.getMustache("foo").render(new Hammer()));
     }
 
+    @Test
+    public void testReloadAndStatsNotSupported() {
+
+        CustomFactory factory = new CustomFactory();
+        Map<String, String> templates = new HashMap<String, String>();
+        templates.put("partial", "P1");
+        templates.put("page", "{{>partial}}!");
+
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addTemplateLocator(new MapTemplateLocator(templates))
+                .setComputingCacheFactory(factory).build();
+
+        assertEquals("P1!", engine.getMustache("page").render(null));
+        templates.put("partial", "P2");
+        // Falls back to invalidation
+        engine.reloadTemplate("partial");
+        assertEquals("P2!", engine.getMustache("page").render(null));
+
+        List<CacheStats> stats = engine.getConfiguration()
+                .getComputingCacheRegistry()
+                .getStats(MustacheEngine.COMPUTING_CACHE_CONSUMER_ID);
+        assertEquals(2, stats.size());
+        for (CacheStats cacheStats : stats) {
+            assertSame(CacheStats.EMPTY, cacheStats);
+        }
+    }
+
     private ReflectionResolver getReflectionResolver(MustacheEngine engine) {
         for (Resolver resolver : engine.getConfiguration().getResolvers()) {
             if(resolver instanceof ReflectionResolver) {
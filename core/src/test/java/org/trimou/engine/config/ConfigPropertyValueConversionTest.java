@@ -40,6 +40,9 @@ public class ConfigPropertyValueConversionTest extends AbstractEngineTest {
         testValue(ReflectionResolver.MEMBER_CACHE_MAX_SIZE_KEY, "nonsense",
                 false);
         testValue(ReflectionResolver.MEMBER_CACHE_MAX_SIZE_KEY, 10l, true);
+        // Validated when the engine is built
+        testValue(EngineConfigurationKey.OUTPUT_BUFFER_SIZE, 8, false);
+        testValue(EngineConfigurationKey.OUTPUT_BUFFER_SIZE, 16, true);
 
         // Invalid default value type
         final ConfigurationKey key = new ConfigurationKey() {
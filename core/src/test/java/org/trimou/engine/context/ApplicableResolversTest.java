@@ -0,0 +1,134 @@
+package org.trimou.engine.context;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.trimou.AbstractTest;
+import org.trimou.Hammer;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.resolver.AbstractResolver;
+import org.trimou.engine.resolver.MapResolver;
+import org.trimou.engine.resolver.ReflectionResolver;
+import org.trimou.engine.resolver.ResolutionContext;
+import org.trimou.engine.resolver.Resolver;
+import org.trimou.engine.resolver.ThisResolver;
+import org.trimou.engine.resolver.TypeAwareResolver;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class ApplicableResolversTest extends AbstractTest {
+
+    @Test
+    public void testResolversFiltered() {
+        Resolver dummy = new AbstractResolver(1) {
+            @Override
+            public Object resolve(Object contextObject, String name,
+                    ResolutionContext context) {
+                return null;
+            }
+        };
+        Resolver[] resolvers = new Resolver[] { new ThisResolver(),
+                new MapResolver(), dummy, new ReflectionResolver() };
+        ApplicableResolvers applicableResolvers = ApplicableResolvers
+                .from(resolvers);
+        assertArrayEquals(new Resolver[] { dummy },
+                applicableResolvers.get(null));
+        assertArrayEquals(resolvers,
+                applicableResolvers.get(new HashMap<String, Object>()));
+        assertArrayEquals(new Resolver[] { resolvers[0], dummy, resolvers[3] },
+                applicableResolvers.get(new Hammer()));
+        // No type-aware resolver
+        assertNull(ApplicableResolvers.from(new Resolver[] { dummy }));
+    }
+
+    @Test
+    public void testManyContextObjectClasses() {
+        Resolver[] resolvers = new Resolver[] { new ThisResolver(),
+                new MapResolver(), new ReflectionResolver() };
+        ApplicableResolvers applicableResolvers = ApplicableResolvers
+                .from(resolvers);
+        Object[] contextObjects = new Object[] { "foo", 1, 1l, 1.0, 1.0f,
+                (short) 1, (byte) 1, 'c', true, new Object(),
+                new StringBuilder(), new ArrayList<Object>(),
+                new LinkedList<Object>(), new HashSet<Object>(),
+                new TreeSet<Object>(), new int[0], new Object[0],
+                new AtomicInteger(), new BigDecimal(1) };
+        for (Object contextObject : contextObjects) {
+            applicableResolvers.get(contextObject);
+        }
+        // Tables are also built for the classes seen later
+        assertArrayEquals(new Resolver[] { resolvers[0], resolvers[2] },
+                applicableResolvers.get(new Hammer()));
+        assertArrayEquals(resolvers,
+                applicableResolvers.get(new HashMap<String, Object>()));
+    }
+
+    @Test
+    public void testNotApplicableResolverSkipped() {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger overriddenCalls = new AtomicInteger();
+        assertEquals(
+                "foo:",
+                MustacheEngineBuilder
+                        .newBuilder()
+                        .addResolver(new ListOnlyResolver(calls))
+                        .addResolver(new ListOnlyResolver(overriddenCalls) {
+                            @Override
+                            public Object resolve(Object contextObject,
+                                    String name, ResolutionContext context) {
+                                overriddenCalls.incrementAndGet();
+                                return null;
+                            }
+                        })
+                        .build()
+                        .compileMustache("applicable_resolvers",
+                                "{{#with map}}{{foo}}:{{missing}}{{/with}}")
+                        .render(ImmutableMap.<String, Object> of("map",
+                                ImmutableMap.of("foo", "foo"))));
+        assertEquals(0, calls.get());
+        // The subclass overrides resolve() but not isApplicable()
+        assertTrue(overriddenCalls.get() > 0);
+    }
+
+    private static class ListOnlyResolver extends AbstractResolver implements
+            TypeAwareResolver {
+
+        private final AtomicInteger calls;
+
+        ListOnlyResolver(AtomicInteger calls) {
+            super(1);
+            this.calls = calls;
+        }
+
+        @Override
+        public Object resolve(Object contextObject, String name,
+                ResolutionContext context) {
+            calls.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public boolean isApplicable(Class<?> contextObjectClass) {
+            return contextObjectClass != null
+                    && List.class.isAssignableFrom(contextObjectClass);
+        }
+
+    }
+
+}
@@ -5,12 +5,16 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 import org.trimou.AbstractEngineTest;
 import org.trimou.Hammer;
+import org.trimou.engine.parser.Template;
 import org.trimou.engine.segment.Segment;
 
+import com.google.common.collect.ImmutableMap;
+
 /**
  *
  * @author Martin Kouba
@@ -39,4 +43,34 @@ public class DefaultExecutionContextTest extends AbstractEngineTest {
         assertNull(ctx03.getDefiningSection("foo"));
     }
 
+    @Test
+    public void testNestedContexts() {
+        List<Segment> segments = ((Template) engine.compileMustache(
+                "exec_ctx_nested", "{{$foo}}1{{/foo}}{{$bar}}2{{/bar}}"))
+                .getRootSegment().getSegments();
+        List<Segment> overriding = ((Template) engine.compileMustache(
+                "exec_ctx_nested_overriding", "{{$foo}}3{{/foo}}"))
+                .getRootSegment().getSegments();
+        Template template = (Template) engine.compileMustache(
+                "exec_ctx_nested_template", "foo");
+
+        ExecutionContext ctx = ExecutionContexts
+                .newGlobalExecutionContext(engine.getConfiguration())
+                .setContextObject(ImmutableMap.of("name", "root", "age", 1))
+                .setTemplateInvocation(template)
+                .setDefiningSections(overriding)
+                .setContextObject(ImmutableMap.of("name", "nested"))
+                .setTemplateInvocation(template).setDefiningSections(segments)
+                .setContextObject(null);
+
+        assertEquals(ImmutableMap.of("name", "nested"),
+                ctx.getFirstContextObject());
+        assertEquals("nested", ctx.getValue("name").get());
+        assertEquals(1, ctx.getValue("age").get());
+        // The first associated defining section wins
+        assertEquals(overriding.get(0), ctx.getDefiningSection("foo"));
+        assertEquals(segments.get(1), ctx.getDefiningSection("bar"));
+        assertNull(ctx.getParent().getParent().getDefiningSection("bar"));
+    }
+
 }
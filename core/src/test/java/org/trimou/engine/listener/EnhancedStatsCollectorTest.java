@@ -18,6 +18,7 @@ import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
 import org.trimou.engine.listener.AbstractStatsCollector.Stats;
 import org.trimou.engine.listener.EnhancedStatsCollector.ExecutionData;
+import org.trimou.engine.listener.EnhancedStatsCollector.HistogramStats;
 import org.trimou.lambda.InputLiteralLambda;
 import org.trimou.lambda.Lambda;
 
@@ -111,4 +112,63 @@ public class EnhancedStatsCollectorTest extends AbstractEngineTest {
         assertNull(collector.getStats(mustache));
     }
 
+    @Test
+    public void testBoundedDataCollecting() {
+        EnhancedStatsCollector collector = new EnhancedStatsCollector(null,
+                TimeUnit.NANOSECONDS, true);
+        Mustache mustache = MustacheEngineBuilder.newBuilder()
+                .addMustacheListener(collector).build()
+                .compileMustache("bounded", "{{this}}");
+        Lambda failing = new InputLiteralLambda() {
+            @Override
+            public boolean isReturnValueInterpolated() {
+                return false;
+            }
+
+            @Override
+            public String invoke(String text) {
+                throw new IllegalStateException();
+            }
+        };
+        int loop = 100;
+        for (int i = 0; i < loop; i++) {
+            mustache.render("foo");
+        }
+        try {
+            mustache.render(failing);
+        } catch (Exception e) {
+            // Expected
+        }
+        Stats stats = collector.getStats(mustache);
+        assertTrue(stats instanceof HistogramStats);
+        HistogramStats histogramStats = (HistogramStats) stats;
+        assertEquals(loop, stats.getFinished());
+        assertEquals(1l, stats.getErrors());
+        assertTrue(stats.getMinTime() > 0);
+        assertTrue(stats.getMinTime() <= histogramStats.getP50Time());
+        assertTrue(histogramStats.getP50Time() <= histogramStats.getP95Time());
+        assertTrue(histogramStats.getP95Time() <= histogramStats.getP99Time());
+        assertTrue(histogramStats.getP99Time() <= stats.getMaxTime());
+        assertEquals(1, collector.getStats().size());
+        assertNull(collector.getRawData(mustache));
+        collector.clearData();
+        assertNull(collector.getStats(mustache));
+    }
+
+    @Test
+    public void testSlidingWindow() throws InterruptedException {
+        EnhancedStatsCollector collector = new EnhancedStatsCollector(null,
+                null, 60, TimeUnit.MILLISECONDS);
+        assertTrue(collector.isBounded());
+        Mustache mustache = MustacheEngineBuilder.newBuilder()
+                .addMustacheListener(collector).build()
+                .compileMustache("window", "{{this}}");
+        mustache.render("foo");
+        mustache.render("foo");
+        assertEquals(2, collector.getStats(mustache).getFinished());
+        Thread.sleep(100);
+        mustache.render("foo");
+        assertEquals(1, collector.getStats(mustache).getFinished());
+    }
+
 }
@@ -0,0 +1,55 @@
+package org.trimou.engine.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.trimou.engine.listener.LatencyHistogram.Snapshot;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value : new long[] { 0, 1, 31, 32, 33, 63, 64, 1000,
+                123456789, LatencyHistogram.MAX_VALUE }) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(index < LatencyHistogram.BUCKET_COUNT);
+            long highest = LatencyHistogram.highestValueOf(index);
+            assertTrue(highest >= value);
+            assertTrue((highest - value) <= value / 16);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.highestValueOf(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000l);
+        }
+        histogram.recordError();
+        Snapshot snapshot = new Snapshot();
+        histogram.addTo(snapshot);
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1, snapshot.getErrors());
+        assertEquals(1000l, snapshot.getMin());
+        assertEquals(1000000l, snapshot.getMax());
+        assertEquals(500500l, snapshot.getMean());
+        assertApproximately(500000, snapshot.getValueAtPercentile(50));
+        assertApproximately(950000, snapshot.getValueAtPercentile(95));
+        assertApproximately(990000, snapshot.getValueAtPercentile(99));
+        assertEquals(1000000l, snapshot.getValueAtPercentile(100));
+    }
+
+    private void assertApproximately(long expected, long actual) {
+        assertTrue("Expected: " + expected + ", actual: " + actual,
+                Math.abs(expected - actual) <= expected / 16);
+    }
+
+}
@@ -9,6 +9,7 @@ import java.util.Set;
 import org.junit.Test;
 import org.trimou.ExceptionAssert;
 import org.trimou.MustacheExceptionAssert;
+import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
 import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.exception.MustacheProblem;
@@ -127,4 +128,38 @@ public class FileSystemTemplateLocatorTest extends PathTemplateLocatorTest {
         assertEquals("Hurá ěščřřžžýá!", read(locator.locate("encoding")));
     }
 
+    @Test
+    public void testMemoryMapping() throws IOException {
+        TemplateLocator locator = new FileSystemTemplateLocator(1,
+                "src/test/resources/locator/file", "html");
+        // Map all the files
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(EngineConfigurationKey.DEFAULT_FILE_ENCODING,
+                        "windows-1250")
+                .setProperty(
+                        FileSystemTemplateLocator.MEMORY_MAPPING_THRESHOLD_KEY,
+                        1l).addTemplateLocator(locator).build();
+        assertEquals("Hurá ěščřřžžýá!", read(locator.locate("encoding")));
+        assertEquals("Hurá ěščřřžžýá!", engine.getMustacheSource("encoding"));
+        assertEquals("Hurá ěščřřžžýá!", engine.getMustache("encoding")
+                .render(null));
+    }
+
+    @Test
+    public void testInvalidEncoding() {
+        final TemplateLocator locator = new FileSystemTemplateLocator(1,
+                "src/test/resources/locator/file", "html");
+        MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(EngineConfigurationKey.DEFAULT_FILE_ENCODING,
+                        "foo-encoding").addTemplateLocator(locator).build();
+        MustacheExceptionAssert.expect(MustacheProblem.TEMPLATE_LOADING_ERROR)
+                .check(new Runnable() {
+                    public void run() {
+                        locator.locate("encoding");
+                    }
+                });
+    }
+
 }
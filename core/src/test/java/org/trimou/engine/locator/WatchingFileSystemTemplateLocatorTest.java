@@ -0,0 +1,104 @@
+package org.trimou.engine.locator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+
+import com.google.common.base.Charsets;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class WatchingFileSystemTemplateLocatorTest {
+
+    private static final long TIMEOUT = 30000l;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChangesReloaded() throws Exception {
+
+        File rootDir = folder.getRoot();
+        write(new File(rootDir, "page.html"), "{{>sub/partial}}!");
+        File sub = new File(rootDir, "sub");
+        assertTrue(sub.mkdir());
+        write(new File(sub, "partial.html"), "P1");
+
+        WatchingFileSystemTemplateLocator locator = new WatchingFileSystemTemplateLocator(
+                1, rootDir.getAbsolutePath(), "html");
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .addTemplateLocator(locator)
+                .setProperty(WatchingFileSystemTemplateLocator.QUIET_PERIOD_KEY,
+                        10l).build();
+        try {
+            assertTrue(locator.isWatching());
+            assertEquals("P1!", engine.getMustache("page").render(null));
+
+            write(new File(sub, "partial.html"), "P2");
+            awaitRendered(engine, "page", "P2!");
+
+            // New subdirectory
+            File other = new File(rootDir, "other");
+            assertTrue(other.mkdir());
+            write(new File(other, "foo.html"), "foo");
+            long start = System.currentTimeMillis();
+            while (engine.getMustache("other/foo") == null) {
+                checkTimeout(start);
+                Thread.sleep(50);
+            }
+            write(new File(other, "foo.html"), "bar");
+            awaitRendered(engine, "other/foo", "bar");
+        } finally {
+            locator.stopWatching();
+        }
+        assertFalse(locator.isWatching());
+    }
+
+    @Test
+    public void testCacheDisabled() throws IOException {
+        WatchingFileSystemTemplateLocator locator = new WatchingFileSystemTemplateLocator(
+                1, folder.getRoot().getAbsolutePath());
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .addTemplateLocator(locator)
+                .setProperty(EngineConfigurationKey.TEMPLATE_CACHE_ENABLED,
+                        false).build();
+        assertFalse(locator.isWatching());
+        write(new File(folder.getRoot(), "foo"), "foo");
+        assertNotNull(engine.getMustache("foo"));
+    }
+
+    private void awaitRendered(MustacheEngine engine, String templateId,
+            String expected) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (!expected.equals(engine.getMustache(templateId).render(null))) {
+            checkTimeout(start);
+            Thread.sleep(50);
+        }
+    }
+
+    private void checkTimeout(long start) {
+        if (System.currentTimeMillis() - start > TIMEOUT) {
+            throw new AssertionError("Change not detected in " + TIMEOUT
+                    + " ms");
+        }
+    }
+
+    private void write(File file, String content) throws IOException {
+        com.google.common.io.Files.write(content, file, Charsets.UTF_8);
+    }
+
+}
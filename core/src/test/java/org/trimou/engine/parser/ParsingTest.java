@@ -4,8 +4,13 @@ import static org.junit.Assert.assertEquals;
 
 import java.util.List;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.trimou.AbstractEngineTest;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.locator.MapTemplateLocator;
 import org.trimou.engine.segment.ExtendSectionSegment;
 import org.trimou.engine.segment.ExtendSegment;
 import org.trimou.engine.segment.InvertedSectionSegment;
@@ -13,12 +18,23 @@ import org.trimou.engine.segment.SectionSegment;
 import org.trimou.engine.segment.Segment;
 import org.trimou.engine.segment.SegmentType;
 
+import com.google.common.collect.ImmutableMap;
+
 /**
  *
  * @author Martin Kouba
  */
 public class ParsingTest extends AbstractEngineTest {
 
+    @Override
+    @Before
+    public void buildEngine() {
+        // Test the parser output - do not merge the text segments
+        engine = MustacheEngineBuilder.newBuilder()
+                .setProperty(EngineConfigurationKey.MERGE_TEXT_SEGMENTS, false)
+                .build();
+    }
+
     @Test
     public void testVariable() {
 
@@ -243,6 +259,69 @@ public class ParsingTest extends AbstractEngineTest {
         validateSegment(segments, 2, SegmentType.TEXT, "Hello!");
     }
 
+    @Test
+    public void testBlockBoundaries() {
+        // Delimiters and line separators crossing the read buffer boundary
+        for (int i = 4088; i < 4100; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < i; j++) {
+                text.append('a');
+            }
+            Template template = (Template) engine.compileMustache(
+                    "parse_block_boundaries_" + i,
+                    text + "{{foo}}\r\nbar{{{baz}}}\r");
+            List<Segment> segments = template.getRootSegment().getSegments();
+            assertEquals(6, segments.size());
+            validateSegment(segments, 0, SegmentType.TEXT, text.toString());
+            validateSegment(segments, 1, SegmentType.VALUE, "foo");
+            validateSegment(segments, 2, SegmentType.LINE_SEPARATOR, "\r\n");
+            validateSegment(segments, 3, SegmentType.TEXT, "bar");
+            validateSegment(segments, 4, SegmentType.VALUE, "baz");
+            validateSegment(segments, 5, SegmentType.LINE_SEPARATOR, "\r");
+        }
+    }
+
+    @Test
+    public void testTextFollowedByCarriageReturn() {
+        Template template = (Template) engine.compileMustache(
+                "parse_text_cr", "Hello\r");
+        List<Segment> segments = template.getRootSegment().getSegments();
+        assertEquals(2, segments.size());
+        validateSegment(segments, 0, SegmentType.TEXT, "Hello");
+        validateSegment(segments, 1, SegmentType.LINE_SEPARATOR, "\r");
+    }
+
+    @Test
+    public void testMergeTextSegments() {
+        MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.of("partial",
+                                "One\r\nTwo {{foo}}\nThree")))
+                .build();
+        Template template = (Template) engine.compileMustache(
+                "parse_merge_text",
+                "Hello{{! Comment}}\n{{#foo}}\n  {{foo}}!\n{{/foo}}\r\nEnd\r\n");
+        List<Segment> segments = template.getRootSegment().getSegments();
+        assertEquals(3, segments.size());
+        validateSegment(segments, 0, SegmentType.TEXT, "Hello\n");
+        validateSegment(segments, 1, SegmentType.SECTION, "foo");
+        validateSegment(segments, 2, SegmentType.TEXT, "End\r\n");
+        List<Segment> sectionSegments = ((SectionSegment) segments.get(1))
+                .getSegments();
+        assertEquals(3, sectionSegments.size());
+        validateSegment(sectionSegments, 0, SegmentType.TEXT, "  ");
+        validateSegment(sectionSegments, 2, SegmentType.TEXT, "!\n");
+        assertEquals("Hello\n  bar!\nEnd\r\n",
+                template.render(ImmutableMap.<String, Object> of("foo", "bar")));
+        // Merged text is split into lines for an indented partial
+        assertEquals(
+                "Start\n  One\r\n  Two bar\n  Three",
+                engine.compileMustache("parse_merge_text_partial",
+                        "Start\n  {{>partial}}\n").render(
+                        ImmutableMap.<String, Object> of("foo", "bar")));
+    }
+
     private void validateSegment(List<Segment> segments, int index,
             SegmentType expectedType, String expectedText) {
         Segment segment = segments.get(index);
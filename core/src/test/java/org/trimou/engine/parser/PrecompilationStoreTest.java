@@ -0,0 +1,151 @@
+package org.trimou.engine.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.trimou.Hammer;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.locator.MapTemplateLocator;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class PrecompilationStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTemplatesRestored() throws IOException {
+
+        File storeFile = new File(folder.getRoot(), "store/templates.bin");
+        Map<String, String> templates = new HashMap<String, String>();
+        templates.put("foo", "{{#each this}}\n  {{name}}:{{{age}}}\n{{/each}}");
+        templates.put("bar", "Hello\n  {{>baz}}\n{{! Comment}}!");
+        templates.put("baz", "{{=<% %>=}}<%#if this%>ok<%/if%>\n");
+
+        MustacheEngine engine = buildEngine(templates, storeFile);
+        assertTrue(storeFile.isFile());
+        String foo = engine.getMustache("foo").render(
+                new Hammer[] { new Hammer(), new Hammer() });
+        String bar = engine.getMustache("bar").render(true);
+        assertEquals("  Edgar:10\n  Edgar:10\n", foo);
+        assertEquals("Hello\n  ok\n!", bar);
+
+        // Restored from the store
+        engine = buildEngine(templates, storeFile);
+        assertEquals(foo, engine.getMustache("foo").render(
+                new Hammer[] { new Hammer(), new Hammer() }));
+        assertEquals(bar, engine.getMustache("bar").render(true));
+
+        // The changed template is parsed again
+        templates.put("baz", "{{#if this}}changed{{/if}}");
+        engine = buildEngine(templates, storeFile);
+        assertEquals("Hello\n  changed!", engine.getMustache("bar")
+                .render(true));
+    }
+
+    @Test
+    public void testChecksumValidated() throws IOException {
+
+        File storeFile = new File(folder.getRoot(), "templates.bin");
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder().build();
+
+        PrecompilationStore store = new PrecompilationStore(storeFile, engine);
+        assertEquals("Hello Edgar!",
+                store.compile("foo", new StringReader("Hello {{name}}!"),
+                        new DefaultParser(engine)).render(new Hammer()));
+        assertEquals(0, store.getRestoredCount());
+        store.save();
+
+        store = new PrecompilationStore(storeFile, engine);
+        assertEquals("Hello Edgar!",
+                store.compile("foo", new StringReader("Hello {{name}}!"),
+                        new DefaultParser(engine)).render(new Hammer()));
+        assertEquals(1, store.getRestoredCount());
+        assertEquals("Hi Edgar!",
+                store.compile("foo", new StringReader("Hi {{name}}!"),
+                        new DefaultParser(engine)).render(new Hammer()));
+        assertEquals(1, store.getRestoredCount());
+
+        // Different configuration - the store is ignored
+        MustacheEngine other = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(EngineConfigurationKey.SKIP_VALUE_ESCAPING, true)
+                .build();
+        store = new PrecompilationStore(storeFile, other);
+        store.compile("foo", new StringReader("Hello {{name}}!"),
+                new DefaultParser(other));
+        assertEquals(0, store.getRestoredCount());
+    }
+
+    @Test
+    public void testSaveOverExistingStore() throws IOException {
+
+        File storeFile = new File(folder.getRoot(), "templates.bin");
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder().build();
+
+        PrecompilationStore store = new PrecompilationStore(storeFile, engine);
+        store.compile("foo", new StringReader("Hello {{name}}!"),
+                new DefaultParser(engine));
+        store.save();
+
+        // Replace the file while the store read from the file is still in use
+        store = new PrecompilationStore(storeFile, engine);
+        store.compile("foo", new StringReader("Hi {{name}}!"),
+                new DefaultParser(engine));
+        store.compile("bar", new StringReader("{{name}}"),
+                new DefaultParser(engine));
+        store.save();
+        assertEquals(0, store.getRestoredCount());
+
+        PrecompilationStore updated = new PrecompilationStore(storeFile,
+                engine);
+        assertEquals("Hi Edgar!",
+                updated.compile("foo", new StringReader("Hi {{name}}!"),
+                        new DefaultParser(engine)).render(new Hammer()));
+        assertEquals("Edgar",
+                updated.compile("bar", new StringReader("{{name}}"),
+                        new DefaultParser(engine)).render(new Hammer()));
+        assertEquals(2, updated.getRestoredCount());
+    }
+
+    @Test
+    public void testChecksum() {
+        assertEquals(PrecompilationStore.checksum(CharBuffer
+                .wrap("{{foo}}")), PrecompilationStore
+                .checksum(CharBuffer.wrap("x{{foo}}x", 1, 8)));
+        assertFalse(PrecompilationStore.checksum(CharBuffer
+                .wrap("{{foo}}")) == PrecompilationStore
+                .checksum(CharBuffer.wrap("{{foo}} ")));
+    }
+
+    private MustacheEngine buildEngine(Map<String, String> templates,
+            File storeFile) {
+        return MustacheEngineBuilder
+                .newBuilder()
+                .addTemplateLocator(
+                        new MapTemplateLocator(ImmutableMap.copyOf(templates)))
+                .setProperty(EngineConfigurationKey.PRECOMPILE_ALL_TEMPLATES,
+                        true)
+                .setProperty(EngineConfigurationKey.PRECOMPILATION_STORE_FILE,
+                        storeFile.getAbsolutePath()).build();
+    }
+
+}
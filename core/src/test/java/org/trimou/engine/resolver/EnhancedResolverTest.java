@@ -1,11 +1,10 @@
 package org.trimou.engine.resolver;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
@@ -14,7 +13,9 @@ import org.trimou.Hammer;
 import org.trimou.Mustache;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.handlebars.BasicHelper;
+import org.trimou.handlebars.HelpersBuilder;
 import org.trimou.handlebars.Options;
 
 /**
@@ -129,36 +130,187 @@ public class EnhancedResolverTest extends AbstractTest {
     }
 
     @Test
-    public void testHintIsNotCreatedForHelper() {
+    public void testHintForHelperKeys() {
+
+        final AtomicInteger hintCreateCounter = new AtomicInteger();
+        final AtomicInteger hintCounter = new AtomicInteger();
+
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addResolver(
+                        newTrueResolver(hintCreateCounter, hintCounter))
+                .registerHelper("foo", new BasicHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        append(options, options.getValue("foo").toString());
+                    }
+                }).build();
+        Mustache mustache = engine.compileMustache("enhancedresolver_helper1",
+                "{{foo 'bar'}}");
+        assertEquals("true", mustache.render(null));
+        assertEquals("true", mustache.render(null));
+        assertEquals(1, hintCreateCounter.get());
+        assertEquals(1, hintCounter.get());
+
+        // Key cache disabled - hints are not used
+        hintCreateCounter.set(0);
+        hintCounter.set(0);
+        engine = MustacheEngineBuilder
+                .newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .setProperty(EngineConfigurationKey.HELPER_KEY_CACHE_MAX_SIZE,
+                        0l)
+                .addResolver(newTrueResolver(hintCreateCounter, hintCounter))
+                .registerHelper("foo", new BasicHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        append(options, options.getValue("foo").toString());
+                    }
+                }).build();
+        mustache = engine.compileMustache("enhancedresolver_helper2",
+                "{{foo 'bar'}}");
+        assertEquals("true", mustache.render(null));
+        assertEquals("true", mustache.render(null));
+        assertEquals(0, hintCreateCounter.get());
+        assertEquals(0, hintCounter.get());
+    }
+
+    @Test
+    public void testPolymorphicHints() {
+
+        final AtomicInteger resolveCounter = new AtomicInteger();
+        final AtomicInteger hintCreateCounter = new AtomicInteger();
+        final AtomicInteger hintCounter = new AtomicInteger();
 
-        final AtomicBoolean hintCreate = new AtomicBoolean(false);
         EnhancedResolver resolver = new AbstractResolver(10) {
 
             @Override
             public Object resolve(Object contextObject, String name,
                     ResolutionContext context) {
-                return true;
+                if (contextObject == null || !"foo".equals(name)) {
+                    return null;
+                }
+                resolveCounter.incrementAndGet();
+                return contextObject.getClass().getSimpleName();
             }
 
             @Override
-            public Hint createHint(Object contextObject, String name, ResolutionContext context) {
-                hintCreate.set(true);
-                return null;
+            public Hint createHint(final Object contextObject, String name,
+                    ResolutionContext context) {
+                hintCreateCounter.incrementAndGet();
+                final Class<?> clazz = contextObject.getClass();
+                return new Hint() {
+                    @Override
+                    public Object resolve(Object contextObject, String name,
+                            ResolutionContext context) {
+                        assertEquals(clazz, contextObject.getClass());
+                        hintCounter.incrementAndGet();
+                        return clazz.getSimpleName();
+                    }
+                };
             }
 
         };
         MustacheEngine engine = MustacheEngineBuilder.newBuilder()
                 .omitServiceLoaderConfigurationExtensions()
-                .addResolver(resolver).registerHelper("foo", new BasicHelper() {
+                .addResolver(resolver).addResolver(new ThisResolver())
+                .build();
+        Mustache mustache = engine.compileMustache("enhancedresolver_poly",
+                "{{#this}}{{foo}},{{/this}}");
+        // Two different classes rendered through a single tag
+        List<Object> data = Arrays.<Object> asList(1, "a", 2, "b");
+        assertEquals("Integer,String,Integer,String,", mustache.render(data));
+        assertEquals("Integer,String,Integer,String,", mustache.render(data));
+        assertEquals(2, hintCreateCounter.get());
+        assertEquals(2, resolveCounter.get());
+        assertEquals(6, hintCounter.get());
+
+        // Megamorphic - no more hints are created
+        data = Arrays.<Object> asList(1, "a", 1l, 1.0, 1.0f, true);
+        assertEquals("Integer,String,Long,Double,Float,Boolean,",
+                mustache.render(data));
+        assertEquals("Integer,String,Long,Double,Float,Boolean,",
+                mustache.render(data));
+        assertEquals(4, hintCreateCounter.get());
+        // Long, Double, and then twice Float and Boolean
+        assertEquals(2 + 2 + 4, resolveCounter.get());
+    }
+
+    @Test
+    public void testHintsForSectionsAndHelperParams() {
+
+        final AtomicInteger resolveCounter = new AtomicInteger();
+        final AtomicInteger hintCounter = new AtomicInteger();
+        final List<String> items = Arrays.asList("a", "b");
+
+        EnhancedResolver resolver = new AbstractResolver(10) {
+
+            @Override
+            public Object resolve(Object contextObject, String name,
+                    ResolutionContext context) {
+                if (!"items".equals(name)) {
+                    return null;
+                }
+                resolveCounter.incrementAndGet();
+                return items;
+            }
+
+            @Override
+            public Hint createHint(Object contextObject, String name,
+                    ResolutionContext context) {
+                return new Hint() {
                     @Override
-                    public void execute(Options options) {
-                        append(options, options.getValue("foo").toString());
+                    public Object resolve(Object contextObject, String name,
+                            ResolutionContext context) {
+                        hintCounter.incrementAndGet();
+                        return items;
                     }
-                }).build();
-        Mustache mustache = engine.compileMustache("enhancedresolver_helper1",
-                "{{foo 'bar'}}");
-        assertEquals("true", mustache.render(null));
-        assertFalse(hintCreate.get());
+                };
+            }
+
+        };
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addResolver(resolver).addResolver(new ThisResolver())
+                .registerHelpers(HelpersBuilder.empty().addEach().build())
+                .build();
+        Mustache mustache = engine.compileMustache(
+                "enhancedresolver_sections",
+                "{{#items}}{{this}}{{/items}}{{^items}}none{{/items}}{{#each items}}{{this}}{{/each}}");
+        assertEquals("abab", mustache.render(null));
+        assertEquals("abab", mustache.render(null));
+        assertEquals("abab", mustache.render(null));
+        // Each call site resolves the key only once
+        assertEquals(3, resolveCounter.get());
+        assertEquals(6, hintCounter.get());
+    }
+
+    private EnhancedResolver newTrueResolver(
+            final AtomicInteger hintCreateCounter,
+            final AtomicInteger hintCounter) {
+        return new AbstractResolver(10) {
+
+            @Override
+            public Object resolve(Object contextObject, String name,
+                    ResolutionContext context) {
+                return true;
+            }
+
+            @Override
+            public Hint createHint(Object contextObject, String name,
+                    ResolutionContext context) {
+                hintCreateCounter.incrementAndGet();
+                return new Hint() {
+                    @Override
+                    public Object resolve(Object contextObject, String name,
+                            ResolutionContext context) {
+                        hintCounter.incrementAndGet();
+                        return true;
+                    }
+                };
+            }
+
+        };
     }
 
 }
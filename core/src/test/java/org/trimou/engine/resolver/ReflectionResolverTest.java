@@ -3,6 +3,8 @@ package org.trimou.engine.resolver;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.Map;
 
@@ -12,6 +14,8 @@ import org.trimou.ArchiveType;
 import org.trimou.Hammer;
 import org.trimou.Mustache;
 import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.exception.MustacheException;
+import org.trimou.exception.MustacheProblem;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
@@ -110,4 +114,40 @@ public class ReflectionResolverTest extends AbstractEngineTest {
         resolver.init(null);
     }
 
+    @Test
+    public void testMethodHandles() {
+        for (boolean enabled : new boolean[] { true, false }) {
+            ReflectionResolver resolver = new ReflectionResolver();
+            MustacheEngineBuilder.newBuilder()
+                    .omitServiceLoaderConfigurationExtensions()
+                    .setProperty(ReflectionResolver.METHOD_HANDLES_ENABLED_KEY,
+                            enabled).addResolver(resolver).build();
+            Hammer hammer = new Hammer();
+            assertEquals(Integer.valueOf(10),
+                    resolver.resolve(hammer, "age", null));
+            assertEquals("NAIL", resolver.resolve(hammer, "nail", null)
+                    .toString());
+            assertEquals(ArchiveType.JAR,
+                    resolver.resolve(ArchiveType.class, "JAR", null));
+            assertEquals(3, ((ArchiveType[]) resolver.resolve(
+                    ArchiveType.class, "values", null)).length);
+            try {
+                resolver.resolve(new Failing(), "value", null);
+                fail();
+            } catch (MustacheException e) {
+                assertEquals(MustacheProblem.RENDER_REFLECT_INVOCATION_ERROR,
+                        e.getCode());
+                assertTrue(e.getCause().getCause() instanceof UnsupportedOperationException);
+            }
+        }
+    }
+
+    public static class Failing {
+
+        public String getValue() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
 }
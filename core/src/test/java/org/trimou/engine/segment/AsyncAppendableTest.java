@@ -0,0 +1,52 @@
+package org.trimou.engine.segment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class AsyncAppendableTest {
+
+    @Test
+    public void testStreamedNodesReleased() throws IOException,
+            InterruptedException {
+
+        StringBuilder out = new StringBuilder();
+        AsyncAppendable appendable = AsyncAppendable.of(out);
+        appendable.append("Hello ");
+
+        AsyncAppendable placeholder = appendable.registerPlaceholder();
+        placeholder.append("world");
+        placeholder.complete(null);
+        WeakReference<AsyncAppendable> placeholderRef = new WeakReference<AsyncAppendable>(
+                placeholder);
+        placeholder = null;
+
+        // Exceed the streaming threshold
+        String text = Strings.repeat("!", 5000);
+        appendable.append(text);
+        assertEquals("Hello world" + text, out.toString());
+
+        // The placeholder (and its buffer) is streamed and must not be
+        // referenced anymore
+        for (int i = 0; i < 50 && placeholderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(placeholderRef.get());
+
+        appendable.append("?");
+        AsyncAppendable.flushIfNeeded(appendable);
+        assertEquals("Hello world" + text + "?", out.toString());
+    }
+
+}
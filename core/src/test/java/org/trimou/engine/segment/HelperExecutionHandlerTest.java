@@ -0,0 +1,61 @@
+package org.trimou.engine.segment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.resolver.AbstractResolver;
+import org.trimou.engine.resolver.ResolutionContext;
+import org.trimou.engine.resource.ReleaseCallback;
+import org.trimou.engine.segment.HelperExecutionHandler.DefaultOptions;
+import org.trimou.handlebars.AbstractHelper;
+import org.trimou.handlebars.Options;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class HelperExecutionHandlerTest {
+
+    @Test
+    public void testValueWrappersNotRetainedWithoutReleaseCallbacks() {
+        final List<List<?>> retained = new ArrayList<List<?>>();
+        String result = MustacheEngineBuilder.newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addResolver(new AbstractResolver(1) {
+                    @Override
+                    public Object resolve(Object contextObject, String name,
+                            ResolutionContext context) {
+                        if (name.startsWith("release")) {
+                            context.registerReleaseCallback(new ReleaseCallback() {
+                                @Override
+                                public void release() {
+                                }
+                            });
+                        }
+                        return name;
+                    }
+                }).registerHelper("test", new AbstractHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        retained.add(((DefaultOptions) options).valueWrappers);
+                        append(options, options.getParameters().toString());
+                    }
+                }).build()
+                .compileMustache("helper_value_wrappers",
+                        "{{test foo bar=baz}}|{{test release1 foo}}")
+                .render(null);
+        assertEquals("[foo]|[release1, foo]", result);
+        assertEquals(2, retained.size());
+        // No release callbacks - the list is not created at all
+        assertNull(retained.get(0));
+        assertNotNull(retained.get(1));
+        assertEquals(1, retained.get(1).size());
+    }
+
+}
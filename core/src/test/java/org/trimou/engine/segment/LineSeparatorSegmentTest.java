@@ -34,7 +34,9 @@ public class LineSeparatorSegmentTest extends AbstractEngineTest {
                 .newBuilder()
                 .setProperty(
                         EngineConfigurationKey.REUSE_LINE_SEPARATOR_SEGMENTS,
-                        true).build()
+                        true)
+                .setProperty(EngineConfigurationKey.MERGE_TEXT_SEGMENTS, false)
+                .build()
                 .compileMustache("line_sep_reuse_enabled", "Hello\n\n\n");
         assertEquals(4, template.getRootSegment().getSegmentsSize(false));
         assertEquals(template.getRootSegment().getSegments().get(1), template
@@ -49,7 +51,9 @@ public class LineSeparatorSegmentTest extends AbstractEngineTest {
                 .newBuilder()
                 .setProperty(
                         EngineConfigurationKey.REUSE_LINE_SEPARATOR_SEGMENTS,
-                        false).build()
+                        false)
+                .setProperty(EngineConfigurationKey.MERGE_TEXT_SEGMENTS, false)
+                .build()
                 .compileMustache("line_sep_reuse_disabled", "Hello\n\n\n");
         assertEquals(4, template.getRootSegment().getSegmentsSize(false));
         assertNotEquals(template.getRootSegment().getSegments().get(1),
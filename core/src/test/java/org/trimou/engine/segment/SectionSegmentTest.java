@@ -2,12 +2,19 @@ package org.trimou.engine.segment;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.trimou.AbstractEngineTest;
 import org.trimou.Hammer;
 import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.parser.Template;
 import org.trimou.lambda.InputProcessingLambda;
 import org.trimou.lambda.Lambda;
@@ -147,7 +154,8 @@ public class SectionSegmentTest extends AbstractEngineTest {
     public void testSegmentSize() {
         Template template = (Template) engine.compileMustache("foo",
                 "{{foo}}bar\nbaz{{#qux}}lala{{/qux}}");
-        assertEquals(6, template.getRootSegment().getSegmentsSize(true));
+        // "bar", "\n" and "baz" are merged
+        assertEquals(4, template.getRootSegment().getSegmentsSize(true));
     }
 
     @Test
@@ -162,4 +170,54 @@ public class SectionSegmentTest extends AbstractEngineTest {
                 mustache.render(new String[] { "1", "2", "3" }));
     }
 
+    @Test
+    public void testParallelIteration() {
+        List<Integer> data = new ArrayList<Integer>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            data.add(i);
+            expected.append(i).append(':').append(i + 1)
+                    .append(i < 999 ? "," : "|");
+        }
+        // Single thread to also test the caller-runs behavior of nested
+        // parallel iterations
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            MustacheEngine engine = MustacheEngineBuilder
+                    .newBuilder()
+                    .setExecutorService(executor)
+                    .setProperty(
+                            EngineConfigurationKey.PARALLEL_ITERATION_ENABLED,
+                            true)
+                    .setProperty(
+                            EngineConfigurationKey.PARALLEL_ITERATION_CHUNK_SIZE,
+                            10).build();
+            assertEquals(
+                    expected.toString(),
+                    engine.compileMustache("parallel_iteration",
+                            "{{#this}}{{this}}:{{iter.index}}{{#iter.hasNext}},{{/iter.hasNext}}{{/this}}|")
+                            .render(data));
+            assertEquals(
+                    expected.toString(),
+                    engine.compileMustache("parallel_iteration_array",
+                            "{{#this}}{{this}}:{{iter.index}}{{#iter.hasNext}},{{/iter.hasNext}}{{/this}}|")
+                            .render(data.toArray()));
+            List<List<Integer>> nested = new ArrayList<List<Integer>>();
+            StringBuilder expectedNested = new StringBuilder();
+            for (int i = 0; i < 20; i++) {
+                nested.add(data.subList(0, 15));
+                expectedNested.append("0123456789101112131415");
+                expectedNested.setLength(expectedNested.length() - 2);
+                expectedNested.append(";");
+            }
+            assertEquals(
+                    expectedNested.toString(),
+                    engine.compileMustache("parallel_iteration_nested",
+                            "{{#this}}{{#this}}{{this}}{{/this}};{{/this}}")
+                            .render(nested));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 }
@@ -0,0 +1,92 @@
+package org.trimou.engine.segment;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+import org.trimou.AbstractEngineTest;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.handlebars.BasicValueHelper;
+import org.trimou.handlebars.Options;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class TextSegmentTest extends AbstractEngineTest {
+
+    @Override
+    public void buildEngine() {
+    }
+
+    @Test
+    public void testRenderToOutputStream() {
+        Mustache mustache = MustacheEngineBuilder.newBuilder().build()
+                .compileMustache("text_output_stream",
+                        "Hello {{name}}!\nPříliš žluťoučký kůň\r\n{{#items}}{{.}}ě{{/items}}");
+        Object data = ImmutableMap.<String, Object> of("name", "Šárka",
+                "items", new String[] { "č", "ř" });
+        for (Charset charset : new Charset[] { Charset.forName("UTF-8"),
+                Charset.forName("ISO-8859-2") }) {
+            // Render twice to reuse the encoded text
+            for (int i = 0; i < 2; i++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                mustache.render(out, charset, data);
+                assertArrayEquals(mustache.render(data).getBytes(charset),
+                        out.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testNestedRenderToOutputStream() {
+        final Mustache inner = MustacheEngineBuilder.newBuilder()
+                .setProperty(EngineConfigurationKey.OUTPUT_BUFFER_SIZE, 16)
+                .build()
+                .compileMustache("text_nested_inner",
+                        "Inner {{this}} and some more text");
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .setProperty(EngineConfigurationKey.OUTPUT_BUFFER_SIZE, 16)
+                .registerHelper("nested", new BasicValueHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        // Render another template to a different stream on
+                        // the same thread
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        inner.render(out, Charsets.UTF_8, options
+                                .getParameters().get(0));
+                        append(options, new String(out.toByteArray(),
+                                Charsets.UTF_8).toUpperCase());
+                    }
+                }).build();
+        Mustache outer = engine.compileMustache("text_nested_outer",
+                "Outer start, {{nested \"foo\"}}, outer end");
+        String expected = "Outer start, INNER FOO AND SOME MORE TEXT, outer end";
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            outer.render(out, Charsets.UTF_8, null);
+            assertEquals(expected, new String(out.toByteArray(),
+                    Charsets.UTF_8));
+        }
+        // Different buffer size on the same thread
+        Mustache other = MustacheEngineBuilder.newBuilder()
+                .setProperty(EngineConfigurationKey.OUTPUT_BUFFER_SIZE, 32)
+                .build()
+                .compileMustache("text_other_buffer_size",
+                        "A text longer than thirty-two bytes {{this}}");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        other.render(out, Charsets.UTF_8, "foo");
+        assertEquals("A text longer than thirty-two bytes foo", new String(
+                out.toByteArray(), Charsets.UTF_8));
+    }
+
+}
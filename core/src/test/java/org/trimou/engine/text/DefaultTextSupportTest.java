@@ -0,0 +1,44 @@
+package org.trimou.engine.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class DefaultTextSupportTest {
+
+    @Test
+    public void testEscapeHtml() {
+        DefaultTextSupport textSupport = new DefaultTextSupport();
+        String noEscaping = "Hello world!";
+        assertSame(noEscaping, textSupport.escapeHtml(noEscaping));
+        assertEquals("&lt;&amp;&gt;", textSupport.escapeHtml("<&>"));
+        assertEquals("&quot;foo&quot; &lt;b&gt;", textSupport.escapeHtml("\"foo\" <b>"));
+        assertEquals("&copy; 2015 &eacute;", textSupport.escapeHtml("\u00a9 2015 \u00e9"));
+        assertEquals("", textSupport.escapeHtml(""));
+    }
+
+    @Test
+    public void testAppendEscapedHtml() throws IOException {
+        DefaultTextSupport textSupport = new DefaultTextSupport();
+        String[] inputs = new String[] { "", "foo", "<", "<foo>", "a&b",
+                "\"quoted\"", "x yÿ", "Ā € & á" };
+        for (String input : inputs) {
+            StringBuilder builder = new StringBuilder("prefix:");
+            textSupport.appendEscapedHtml(input, builder);
+            assertEquals("prefix:"
+                    + StringEscapeUtils.ESCAPE_HTML3.translate(input),
+                    builder.toString());
+            assertEquals(StringEscapeUtils.ESCAPE_HTML3.translate(input),
+                    textSupport.escapeHtml(input));
+        }
+    }
+
+}
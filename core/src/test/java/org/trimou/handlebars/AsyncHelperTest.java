@@ -2,6 +2,8 @@ package org.trimou.handlebars;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import org.junit.Test;
@@ -76,4 +78,73 @@ public class AsyncHelperTest extends AbstractTest {
                 });
     }
 
+    @Test
+    public void testAsyncHelperOrdering() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final MustacheEngine engine = MustacheEngineBuilder
+                    .newBuilder()
+                    .setExecutorService(executor)
+                    .registerHelpers(HelpersBuilder.empty().addAsync().build())
+                    .registerHelper("sleep", new BasicSectionHelper() {
+                        @Override
+                        public void execute(final Options options) {
+                            options.executeAsync(new Options.HelperExecutable() {
+                                @Override
+                                public void execute(Options asyncOptions) {
+                                    try {
+                                        Thread.sleep(Long.valueOf(options
+                                                .getParameters().get(0)
+                                                .toString()));
+                                    } catch (InterruptedException e) {
+                                        throw new IllegalStateException(e);
+                                    }
+                                    asyncOptions.fn();
+                                }
+                            });
+                        }
+                    })
+                    .registerHelper("fail", new BasicValueHelper() {
+                        @Override
+                        public void execute(Options options) {
+                            throw new IllegalStateException();
+                        }
+
+                        @Override
+                        protected int numberOfRequiredParameters() {
+                            return 0;
+                        }
+                    }).build();
+            StringBuilder template = new StringBuilder();
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 20; i++) {
+                // The first placeholders complete last
+                template.append("{{#sleep " + (20 - i) + "}}" + i
+                        + "{{#async}}-{{#sleep 1}}" + i
+                        + "{{/sleep}}{{/async}}{{/sleep}}");
+                template.append("{{#each this}}{{this}}{{/each}}");
+                expected.append(i).append('-').append(i);
+                for (int j = 0; j < 200; j++) {
+                    expected.append("abcdefghij");
+                }
+            }
+            String[] data = new String[200];
+            Arrays.fill(data, "abcdefghij");
+            assertEquals(expected.toString(),
+                    engine.compileMustache("async_helper04", template.toString())
+                            .render(data));
+            MustacheExceptionAssert.expect(
+                    MustacheProblem.RENDER_ASYNC_PROCESSING_ERROR).check(
+                    new Runnable() {
+                        public void run() {
+                            engine.compileMustache("async_helper05",
+                                    "foo{{#async}}{{fail}}{{/async}}bar")
+                                    .render(null);
+                        }
+                    });
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 }
@@ -4,6 +4,10 @@ import static org.junit.Assert.assertEquals;
 import static org.trimou.AssertUtil.assertCompilationFails;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.trimou.AbstractEngineTest;
@@ -12,6 +16,7 @@ import org.trimou.Hammer;
 import org.trimou.MustacheExceptionAssert;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.exception.MustacheProblem;
 
 import com.google.common.collect.ImmutableMap;
@@ -100,6 +105,55 @@ public class BuiltInHelpersTest extends AbstractEngineTest {
                 });
     }
 
+    @Test
+    public void testEachHelperParallel() {
+        List<Integer> data = new ArrayList<Integer>();
+        StringBuilder expected = new StringBuilder();
+        StringBuilder expectedAlias = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            data.add(i);
+            expected.append(i).append(':').append(i + 1).append(i < 99 ? "," : "");
+            expectedAlias.append(i % 2 == 0 ? "" : i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final MustacheEngine engine = MustacheEngineBuilder
+                    .newBuilder()
+                    .setExecutorService(executor)
+                    .setProperty(
+                            EngineConfigurationKey.PARALLEL_ITERATION_CHUNK_SIZE,
+                            7)
+                    .addGlobalData("odd", new Function() {
+                        @Override
+                        public Object apply(Object input) {
+                            return ((Integer) input) % 2 == 0 ? EachHelper.SKIP_RESULT
+                                    : input;
+                        }
+                    }).build();
+            assertEquals(
+                    expected.toString(),
+                    engine.compileMustache("each_helper_parallel1",
+                            "{{#each this parallel='true'}}{{this}}:{{iter.index}}{{#if iter.hasNext}},{{/if}}{{/each}}")
+                            .render(data));
+            assertEquals(
+                    expectedAlias.toString(),
+                    engine.compileMustache("each_helper_parallel2",
+                            "{{#each this apply=odd as='item' parallel='true'}}{{item}}{{/each}}")
+                            .render(data.toArray()));
+        } finally {
+            executor.shutdown();
+        }
+        MustacheExceptionAssert.expect(
+                MustacheProblem.RENDER_HELPER_INVALID_OPTIONS).check(
+                new Runnable() {
+                    public void run() {
+                        engine.compileMustache("each_helper_parallel_fail1",
+                                "{{#each this parallel='true'}}{{/each}}")
+                                .render(new Object[] { "foo" });
+                    }
+                });
+    }
+
     @Test
     public void testIfHelper() {
         assertEquals(
@@ -9,11 +9,13 @@ import java.util.Set;
 
 import org.junit.Test;
 import org.trimou.AbstractTest;
+import org.trimou.Mustache;
 import org.trimou.engine.MustacheEngine;
 import org.trimou.engine.MustacheEngineBuilder;
 import org.trimou.engine.MustacheTagInfo;
 import org.trimou.engine.config.Configuration;
 import org.trimou.engine.config.ConfigurationKey;
+import org.trimou.engine.config.EngineConfigurationKey;
 import org.trimou.engine.interpolation.BracketDotKeySplitter;
 import org.trimou.engine.interpolation.MissingValueHandler;
 import org.trimou.handlebars.EvalHelper.BracketDotNotation;
@@ -44,6 +46,25 @@ public class EvalHelperTest extends AbstractTest {
                         .render(data));
     }
 
+    @Test
+    public void testKeyCacheEviction() {
+        final MustacheEngine engine = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(EngineConfigurationKey.HELPER_KEY_CACHE_MAX_SIZE,
+                        2l)
+                .registerHelpers(HelpersBuilder.empty().addEval().build())
+                .build();
+        Mustache mustache = engine
+                .compileMustache("eval_helper_cache",
+                        "{{#each list}}{{eval 'array' iter.position 'length'}}{{/each}}");
+        Map<String, Object> data = ImmutableMap.<String, Object> of("array",
+                new String[] { "a", "bb", "ccc", "dddd" }, "list",
+                ImmutableList.of(1, 2, 3, 4));
+        // More keys than the cache max size
+        assertEquals("1234", mustache.render(data));
+        assertEquals("1234", mustache.render(data));
+    }
+
     @Test
     public void testCustomNotation() {
         final MustacheEngine engine = MustacheEngineBuilder
@@ -0,0 +1,57 @@
+package org.trimou.handlebars;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.trimou.AbstractTest;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngine;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+
+import com.google.common.base.Charsets;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class FlushHelperTest extends AbstractTest {
+
+    @Test
+    public void testFlushHelper() {
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .registerHelpers(HelpersBuilder.empty().addFlush().build())
+                .setProperty(EngineConfigurationKey.OUTPUT_BUFFER_SIZE, 1024)
+                .build();
+        final List<String> flushed = new ArrayList<String>();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() throws IOException {
+                flushed.add(new String(toByteArray(), Charsets.UTF_8));
+            }
+        };
+        Object data = new Object() {
+            @SuppressWarnings("unused")
+            public String getTitle() {
+                return "Hello";
+            }
+        };
+        Mustache mustache = engine.compileMustache("flush_helper_01",
+                "<head>{{title}}</head>{{flush}}<body>{{flush}}</body>");
+        mustache.render(out, Charsets.UTF_8, data);
+        assertEquals(2, flushed.size());
+        assertEquals("<head>Hello</head>", flushed.get(0));
+        assertEquals("<head>Hello</head><body>", flushed.get(1));
+        assertEquals("<head>Hello</head><body></body>",
+                new String(out.toByteArray(), Charsets.UTF_8));
+        // No-op if the appendable is not flushable
+        assertEquals("<head>Hello</head><body></body>",
+                mustache.render(data));
+    }
+
+}
@@ -35,7 +35,7 @@ public class HelpersBuilderTest {
     @Test
     public void testExtra() {
         Map<String, Helper> helpers = HelpersBuilder.extra().build();
-        assertEquals(19, helpers.size());
+        assertEquals(20, helpers.size());
         assertTrue(helpers.containsKey(HelpersBuilder.EMBED));
         assertTrue(helpers.containsKey(HelpersBuilder.INCLUDE));
         assertTrue(helpers.containsKey(HelpersBuilder.IS_EQUAL));
@@ -51,6 +51,7 @@ public class HelpersBuilderTest {
         assertTrue(helpers.containsKey(HelpersBuilder.EVAL));
         assertTrue(helpers.containsKey(HelpersBuilder.NUMERIC_EXPRESSION));
         assertTrue(helpers.containsKey(HelpersBuilder.ASYNC));
+        assertTrue(helpers.containsKey(HelpersBuilder.FLUSH));
     }
 
 }
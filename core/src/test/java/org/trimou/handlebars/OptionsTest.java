@@ -7,6 +7,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -26,6 +27,7 @@ import org.trimou.engine.resolver.ResolutionContext;
 import org.trimou.engine.resource.ReleaseCallback;
 import org.trimou.exception.MustacheProblem;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 /**
@@ -253,6 +255,45 @@ public class OptionsTest extends AbstractTest {
         assertTrue(released.get());
     }
 
+    @Test
+    public void testParamsAndHashValuesReleased() {
+        final List<String> released = new CopyOnWriteArrayList<String>();
+        MustacheEngine engine = MustacheEngineBuilder.newBuilder()
+                .omitServiceLoaderConfigurationExtensions()
+                .addResolver(new AbstractResolver(1) {
+                    @Override
+                    public Object resolve(Object contextObject,
+                            final String name, ResolutionContext context) {
+                        if (name.startsWith("release")) {
+                            context.registerReleaseCallback(new ReleaseCallback() {
+                                @Override
+                                public void release() {
+                                    released.add(name);
+                                }
+                            });
+                        }
+                        return name;
+                    }
+                }).registerHelper("test", new AbstractHelper() {
+                    @Override
+                    public void execute(Options options) {
+                        // Values must not be released before the helper is
+                        // executed
+                        assertTrue(released.isEmpty());
+                        options.append(options.getParameters().toString());
+                        options.append(options.getHash().toString());
+                    }
+                }).build();
+        assertEquals(
+                "[release1, foo, release2]{bar=release3}",
+                engine.compileMustache("helper_released",
+                        "{{test release1 foo release2 bar=release3}}").render(
+                        null));
+        assertEquals(3, released.size());
+        assertTrue(released.containsAll(ImmutableList.of("release1",
+                "release2", "release3")));
+    }
+
     @Test
     public void testAsyncExecution() {
         MustacheEngine engine = MustacheEngineBuilder
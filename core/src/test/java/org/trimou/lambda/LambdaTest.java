@@ -2,8 +2,18 @@ package org.trimou.lambda;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.Test;
 import org.trimou.AbstractEngineTest;
+import org.trimou.Mustache;
+import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.config.EngineConfigurationKey;
+import org.trimou.engine.listener.AbstractMustacheListener;
+import org.trimou.engine.listener.MustacheCompilationEvent;
+import org.trimou.engine.listener.MustacheListener;
 import org.trimou.engine.segment.SectionSegmentTest;
 import org.trimou.engine.segment.ValueSegmentTest;
 
@@ -37,4 +47,63 @@ public class LambdaTest extends AbstractEngineTest {
                         ImmutableMap.of("foo", "true", "lambda", lambda)));
     }
 
+    @Test
+    public void testReturnValueTemplateCache() {
+        final AtomicInteger compilations = new AtomicInteger();
+        final AtomicReference<String> returnValue = new AtomicReference<String>(
+                "{{foo}}");
+        Lambda lambda = new InputProcessingLambda() {
+            @Override
+            public String invoke(String text) {
+                return returnValue.get();
+            }
+
+            @Override
+            public boolean isReturnValueInterpolated() {
+                return true;
+            }
+        };
+        Mustache mustache = MustacheEngineBuilder.newBuilder()
+                .addMustacheListener(countOneoffCompilations(compilations))
+                .build()
+                .compileMustache("lambda_return_cache",
+                        "{{#lambda}}Hello{{/lambda}}|{{lambda}}");
+        Map<String, Object> data = ImmutableMap.<String, Object> of("foo",
+                "1", "lambda", lambda);
+        assertEquals("1|1", mustache.render(data));
+        assertEquals("1|1", mustache.render(data));
+        // One template per tag
+        assertEquals(2, compilations.get());
+        returnValue.set("{{foo}}{{foo}}");
+        assertEquals("11|11", mustache.render(data));
+        assertEquals(4, compilations.get());
+
+        // Cache disabled
+        compilations.set(0);
+        mustache = MustacheEngineBuilder
+                .newBuilder()
+                .setProperty(
+                        EngineConfigurationKey.LAMBDA_TEMPLATE_CACHE_MAX_SIZE,
+                        0l)
+                .addMustacheListener(countOneoffCompilations(compilations))
+                .build()
+                .compileMustache("lambda_return_nocache", "{{lambda}}");
+        assertEquals("11", mustache.render(data));
+        assertEquals("11", mustache.render(data));
+        assertEquals(2, compilations.get());
+    }
+
+    private MustacheListener countOneoffCompilations(
+            final AtomicInteger compilations) {
+        return new AbstractMustacheListener() {
+            @Override
+            public void compilationFinished(MustacheCompilationEvent event) {
+                if (event.getMustache().getName()
+                        .startsWith(Lambda.ONEOFF_LAMBDA_TEMPLATE_PREFIX)) {
+                    compilations.incrementAndGet();
+                }
+            }
+        };
+    }
+
 }
@@ -0,0 +1,64 @@
+package org.trimou.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class OutputStreamAppendableTest {
+
+    @Test
+    public void testAppend() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStreamAppendable appendable = new OutputStreamAppendable(out,
+                Charsets.UTF_8, 16);
+        appendable.append("Hello ").append("čřž", 1, 3).append('!')
+                .append(null).append(" and some more text to overflow");
+        appendable.flush();
+        assertEquals("Hello řž!null and some more text to overflow", new String(out.toByteArray(),
+                Charsets.UTF_8));
+    }
+
+    @Test
+    public void testSurrogatePairSplit() throws IOException {
+        String text = "abcdefghijklmn😀xyz";
+        int split = text.indexOf("😀") + 1;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStreamAppendable appendable = new OutputStreamAppendable(out,
+                Charsets.UTF_8, 16);
+        appendable.append(text, 0, split);
+        appendable.append(text, split, text.length());
+        appendable.flush();
+        assertArrayEquals(text.getBytes(Charsets.UTF_8), out.toByteArray());
+    }
+
+    @Test
+    public void testWriteBytes() throws IOException {
+        Charset charset = Charset.forName("ISO-8859-2");
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            large.append("ěščř");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStreamAppendable appendable = new OutputStreamAppendable(out,
+                charset, 16);
+        appendable.append("foo");
+        appendable.write("ž".getBytes(charset));
+        appendable.write(large.toString().getBytes(charset));
+        appendable.append("bar");
+        appendable.flush();
+        assertEquals("foož" + large + "bar",
+                new String(out.toByteArray(), charset));
+    }
+
+}
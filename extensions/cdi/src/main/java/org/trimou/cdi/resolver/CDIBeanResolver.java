@@ -37,6 +37,7 @@ import org.trimou.engine.priority.WithPriority;
 import org.trimou.engine.resolver.AbstractResolver;
 import org.trimou.engine.resolver.Hints;
 import org.trimou.engine.resolver.ResolutionContext;
+import org.trimou.engine.resolver.TypeAwareResolver;
 import org.trimou.engine.resource.ReleaseCallback;
 
 import com.google.common.base.Optional;
@@ -50,7 +51,8 @@ import com.google.common.base.Optional;
  *
  * @author Martin Kouba
  */
-public class CDIBeanResolver extends AbstractResolver {
+public class CDIBeanResolver extends AbstractResolver implements
+        TypeAwareResolver {
 
     private static final Logger logger = LoggerFactory
             .getLogger(CDIBeanResolver.class);
@@ -101,6 +103,11 @@ public class CDIBeanResolver extends AbstractResolver {
         this.beanManager = beanManager;
     }
 
+    @Override
+    public boolean isApplicable(Class<?> contextObjectClass) {
+        return contextObjectClass == null;
+    }
+
     @Override
     public Object resolve(Object contextObject, String name,
             ResolutionContext context) {
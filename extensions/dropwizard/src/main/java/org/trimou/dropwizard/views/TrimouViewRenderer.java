@@ -21,8 +21,7 @@ import io.dropwizard.views.ViewRenderer;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Locale;
 
 import javax.ws.rs.WebApplicationException;
@@ -92,14 +91,15 @@ public class TrimouViewRenderer implements ViewRenderer {
             throw new FileNotFoundException("Template not found: " + view.getTemplateName());
         }
 
-        final Writer writer = new OutputStreamWriter(output, engine.getConfiguration().getStringPropertyValue(EngineConfigurationKey.DEFAULT_FILE_ENCODING));
+        final Charset charset = Charset.forName(engine.getConfiguration().getStringPropertyValue(EngineConfigurationKey.DEFAULT_FILE_ENCODING));
 
         try {
-            template.render(writer, view);
+            // Static template parts are written as pre-encoded bytes
+            template.render(output, charset, view);
         } catch (MustacheException e) {
             throw new IOException(e);
         } finally {
-            writer.flush();
+            output.flush();
         }
     }
 
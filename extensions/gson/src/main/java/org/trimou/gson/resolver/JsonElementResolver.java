@@ -25,6 +25,7 @@ import org.trimou.engine.config.SimpleConfigurationKey;
 import org.trimou.engine.resolver.ArrayIndexResolver;
 import org.trimou.engine.resolver.IndexResolver;
 import org.trimou.engine.resolver.ResolutionContext;
+import org.trimou.engine.resolver.TypeAwareResolver;
 import org.trimou.engine.resolver.Placeholder;
 
 import com.google.gson.JsonArray;
@@ -39,7 +40,8 @@ import com.google.gson.JsonPrimitive;
  * @see <a
  *      href="http://code.google.com/p/google-gson/">http://code.google.com/p/google-gson/</a>
  */
-public class JsonElementResolver extends IndexResolver {
+public class JsonElementResolver extends IndexResolver implements
+        TypeAwareResolver {
 
     public static final int JSON_ELEMENT_RESOLVER_PRIORITY = rightAfter(ArrayIndexResolver.ARRAY_RESOLVER_PRIORITY);
 
@@ -83,6 +85,12 @@ public class JsonElementResolver extends IndexResolver {
         };
     }
 
+    @Override
+    public boolean isApplicable(Class<?> contextObjectClass) {
+        return contextObjectClass != null
+                && JsonElement.class.isAssignableFrom(contextObjectClass);
+    }
+
     @Override
     public Object resolve(Object contextObject, String name,
             ResolutionContext context) {
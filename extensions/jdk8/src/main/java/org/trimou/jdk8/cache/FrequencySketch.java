@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Martin Kouba
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trimou.jdk8.cache;
+
+/**
+ * A probabilistic estimate of the access frequency of cache keys - a count-min
+ * sketch with four hash functions and 4-bit counters (sixteen counters are
+ * packed in a single long). Once the number of recorded accesses reaches the
+ * sample size all the counters are halved so that the sketch reflects recent
+ * history (aging).
+ *
+ * <p>
+ * The sketch is not synchronized. Concurrent updates may be lost which only
+ * makes the estimate a bit less accurate - this is acceptable for the purpose
+ * of cache admission.
+ * </p>
+ *
+ * @author Martin Kouba
+ * @see MapBackedComputingCacheFactory.MaxSizeStrategy#EVICT
+ */
+final class FrequencySketch {
+
+    static final int MAX_FREQUENCY = 15;
+
+    private static final int MIN_TABLE_LENGTH = 64;
+
+    private static final int MAX_TABLE_LENGTH = 1 << 20;
+
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L,
+            0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    /**
+     *
+     * @param maxSize
+     *            The max size of the cache
+     */
+    FrequencySketch(long maxSize) {
+        int length = ceilingPowerOfTwo((int) Math.min(
+                Math.max(maxSize, MIN_TABLE_LENGTH), MAX_TABLE_LENGTH));
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * length;
+    }
+
+    /**
+     *
+     * @param key
+     * @return the estimated number of accesses of the given key, never greater
+     *         than {@link #MAX_FREQUENCY}
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = mix(hash, i);
+            int count = (int) ((table[indexOf(h)] >>> offsetOf(h)) & 0xfL);
+            if (count < frequency) {
+                frequency = count;
+            }
+        }
+        return frequency;
+    }
+
+    /**
+     * Record an access of the given key.
+     *
+     * @param key
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long h = mix(hash, i);
+            added |= incrementAt(indexOf(h), offsetOf(h));
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int offset) {
+        long mask = 0xfL << offset;
+        // Read the value only once - otherwise a concurrent update could
+        // overflow the counter into the neighbouring one
+        long value = table[index];
+        if ((value & mask) != mask) {
+            table[index] = value + (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halve all the counters.
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = additions >>> 1;
+    }
+
+    private int indexOf(long h) {
+        return (int) h & tableMask;
+    }
+
+    private int offsetOf(long h) {
+        // Use the upper bits so that the offset is not correlated with the
+        // index
+        return (int) (h >>> 60) << 2;
+    }
+
+    private static long mix(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        return h ^ (h >>> 29);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+}
@@ -15,27 +15,39 @@
  */
 package org.trimou.jdk8.cache;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.trimou.engine.cache.CacheStats;
 import org.trimou.engine.cache.ComputingCache;
 import org.trimou.engine.cache.ComputingCache.Function;
 import org.trimou.engine.cache.ComputingCache.Listener;
 import org.trimou.engine.cache.ComputingCacheFactory;
+import org.trimou.engine.cache.StatsRecordingComputingCache;
+import org.trimou.engine.cache.WritableComputingCache;
 import org.trimou.engine.config.AbstractConfigurationAware;
 import org.trimou.util.Checker;
 
-import com.google.common.collect.ImmutableMap;
-
 /**
  * A computing cache factory producing computing cache implementations backed by
  * {@link ConcurrentHashMap}. This implementation is a bit faster than the
- * default one using {@link com.google.common.cache.LoadingCache}. On the other
- * hand it does not support automatic timeout eviction and listeners. Moreover
- * its size-based eviction is not so effective.
+ * default one using {@link com.google.common.cache.LoadingCache} and does not
+ * depend on Guava caches.
+ *
+ * <p>
+ * Both the expiration timeout (entries expire after write) and the removal
+ * listeners are supported. The size-based eviction depends on the
+ * {@link MaxSizeStrategy} - by default a frequency-aware eviction is used, see
+ * also {@link MaxSizeStrategy#EVICT}.
+ * </p>
  *
  * @author Martin Kouba
  * @see Map#computeIfAbsent(Object, java.util.function.Function)
@@ -43,13 +55,10 @@ import com.google.common.collect.ImmutableMap;
 public class MapBackedComputingCacheFactory extends AbstractConfigurationAware
         implements ComputingCacheFactory {
 
-    private static final Logger logger = LoggerFactory
-            .getLogger(MapBackedComputingCacheFactory.class);
-
     private final MaxSizeStrategy maxSizeStrategy;
 
     public MapBackedComputingCacheFactory() {
-        this(MaxSizeStrategy.CLEAR);
+        this(MaxSizeStrategy.EVICT);
     }
 
     /**
@@ -66,20 +75,12 @@ public class MapBackedComputingCacheFactory extends AbstractConfigurationAware
             Function<K, V> computingFunction, Long expirationTimeout,
             Long maxSize, Listener<K> listener) {
 
-        if (expirationTimeout != null) {
-            throw new IllegalArgumentException(
-                    "Expiration timeout not supported");
-        }
-        if (listener != null) {
-            logger.warn("Listener not supported - notifications will not be delivered");
-        }
         if (maxSize != null && !maxSizeStrategy.isEvictionSupported()) {
             throw new IllegalArgumentException(
                     "Max size limit not supported - use a different eviction strategy");
         }
-        return new ConcurrentHashMapAdapter<K, V>(
-                new ConcurrentHashMap<K, V>(), computingFunction, maxSize,
-                maxSizeStrategy);
+        return new ConcurrentHashMapAdapter<K, V>(computingFunction,
+                expirationTimeout, maxSize, maxSizeStrategy, listener);
     }
 
     /**
@@ -90,57 +91,146 @@ public class MapBackedComputingCacheFactory extends AbstractConfigurationAware
      * @param <V>
      */
     private static class ConcurrentHashMapAdapter<K, V> implements
-            ComputingCache<K, V> {
+            WritableComputingCache<K, V>, StatsRecordingComputingCache<K, V> {
 
         private static final Logger logger = LoggerFactory
                 .getLogger(ConcurrentHashMapAdapter.class);
 
+        /**
+         * The number of entries inspected when looking for an eviction victim
+         */
+        private static final int EVICTION_SAMPLE_SIZE = 8;
+
         private final MaxSizeStrategy maxSizeStrategy;
 
         private final Long maxSize;
 
-        private final ConcurrentHashMap<K, V> map;
+        /**
+         * In nanoseconds, 0 means no expiration
+         */
+        private final long expirationTimeout;
+
+        private final ConcurrentHashMap<K, CacheEntry<V>> map;
 
         private final FunctionAdapter<K, V> computingFunctionAdapter;
 
+        private final Listener<K> listener;
+
+        /**
+         * Only used for {@link MaxSizeStrategy#EVICT}
+         */
+        private final FrequencySketch sketch;
+
+        private final AtomicLong nextCleanup;
+
+        private final LongAdder hitCount;
+
+        private final LongAdder missCount;
+
+        private final LongAdder evictionCount;
+
+        private final LongAdder loadSuccessCount;
+
+        private final LongAdder loadExceptionCount;
+
+        private final LongAdder totalLoadTime;
+
+        /**
+         * Guarded by this
+         */
+        private Iterator<K> evictionHand;
+
         /**
          *
-         * @param map
          * @param computingFunction
+         * @param expirationTimeout
          * @param maxSize
          * @param maxSizeStrategy
+         * @param listener
          */
-        ConcurrentHashMapAdapter(ConcurrentHashMap<K, V> map,
-                ComputingCache.Function<K, V> computingFunction, Long maxSize,
-                MaxSizeStrategy maxSizeStrategy) {
-            this.map = map;
+        ConcurrentHashMapAdapter(
+                ComputingCache.Function<K, V> computingFunction,
+                Long expirationTimeout, Long maxSize,
+                MaxSizeStrategy maxSizeStrategy, Listener<K> listener) {
+            this.map = new ConcurrentHashMap<K, CacheEntry<V>>();
             this.maxSize = maxSize;
+            this.maxSizeStrategy = maxSizeStrategy;
+            this.expirationTimeout = expirationTimeout != null
+                    && expirationTimeout > 0 ? TimeUnit.MILLISECONDS
+                    .toNanos(expirationTimeout) : 0;
+            this.listener = listener;
             this.computingFunctionAdapter = new FunctionAdapter<K, V>(
                     computingFunction, this);
-            this.maxSizeStrategy = maxSizeStrategy;
+            this.sketch = maxSize != null
+                    && MaxSizeStrategy.EVICT.equals(maxSizeStrategy) ? new FrequencySketch(
+                    maxSize) : null;
+            this.nextCleanup = new AtomicLong(System.nanoTime()
+                    + this.expirationTimeout);
+            this.hitCount = new LongAdder();
+            this.missCount = new LongAdder();
+            this.evictionCount = new LongAdder();
+            this.loadSuccessCount = new LongAdder();
+            this.loadExceptionCount = new LongAdder();
+            this.totalLoadTime = new LongAdder();
         }
 
         @Override
         public V get(K key) {
+            CacheEntry<V> entry = getEntry(key);
+            if (entry != null) {
+                hitCount.increment();
+                return entry.value;
+            }
+            missCount.increment();
+            if (expirationTimeout > 0) {
+                cleanUpIfNeeded();
+            }
+            V value;
             try {
-                return compute(key);
+                value = compute(key);
             } catch (MaxSizeExceededException e) {
                 handleMaxSizeExceeding();
                 // Theoretically, this may also throw MaxSizeExceededException
                 // if the limit is exceeded before the value is computed, which
                 // is unlikely.
-                return compute(key);
+                value = compute(key);
             }
+            if (sketch != null && map.size() > maxSize) {
+                evict(key);
+            }
+            return value;
         }
 
         @Override
         public V getIfPresent(K key) {
-            return map.get(key);
+            CacheEntry<V> entry = getEntry(key);
+            if (entry != null) {
+                hitCount.increment();
+                return entry.value;
+            }
+            missCount.increment();
+            return null;
+        }
+
+        @Override
+        public void put(K key, V value) {
+            CacheEntry<V> previous = map.put(key, new CacheEntry<V>(value,
+                    expirationTimeout > 0 ? System.nanoTime() : 0));
+            if (previous != null) {
+                if (listener != null) {
+                    listener.entryInvalidated(key,
+                            RemovalCause.REPLACED.toString());
+                }
+            } else if (sketch != null && map.size() > maxSize) {
+                evict(key);
+            } else if (maxSize != null && map.size() > maxSize) {
+                handleMaxSizeExceeding();
+            }
         }
 
         @Override
         public void clear() {
-            map.clear();
+            removeAll(null, RemovalCause.EXPLICIT);
         }
 
         @Override
@@ -150,21 +240,106 @@ public class MapBackedComputingCacheFactory extends AbstractConfigurationAware
 
         @Override
         public void invalidate(ComputingCache.KeyPredicate<K> keyPredicate) {
-            for (Iterator<K> iterator = map.keySet().iterator(); iterator
-                    .hasNext();) {
-                if (keyPredicate.apply(iterator.next())) {
-                    iterator.remove();
+            removeAll(keyPredicate, RemovalCause.EXPLICIT);
+        }
+
+        @Override
+        public Map<K, V> getAllPresent() {
+            long now = System.nanoTime();
+            Map<K, V> entries = new HashMap<K, V>();
+            for (Map.Entry<K, CacheEntry<V>> entry : map.entrySet()) {
+                if (!isExpired(entry.getValue(), now)) {
+                    entries.put(entry.getKey(), entry.getValue().value);
                 }
             }
+            return Collections.unmodifiableMap(entries);
         }
 
         @Override
-        public Map<K, V> getAllPresent() {
-            return ImmutableMap.<K, V> copyOf(map);
+        public CacheStats stats() {
+            return new CacheStats(hitCount.sum(), missCount.sum(),
+                    loadSuccessCount.sum(), loadExceptionCount.sum(),
+                    totalLoadTime.sum(), evictionCount.sum());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s [size: %s, %s]", getClass()
+                    .getSimpleName(), map.size(), stats());
+        }
+
+        /**
+         *
+         * @param key
+         * @return the entry for the given key or <code>null</code> if no such
+         *         entry exists or the entry is expired
+         */
+        private CacheEntry<V> getEntry(K key) {
+            if (sketch != null) {
+                sketch.increment(key);
+            }
+            CacheEntry<V> entry = map.get(key);
+            if (entry != null && isExpired(entry, System.nanoTime())) {
+                remove(key, entry, RemovalCause.EXPIRED);
+                return null;
+            }
+            return entry;
         }
 
         private V compute(K key) {
-            return map.computeIfAbsent(key, computingFunctionAdapter);
+            CacheEntry<V> entry = map.computeIfAbsent(key,
+                    computingFunctionAdapter);
+            return entry != null ? entry.value : null;
+        }
+
+        private boolean isExpired(CacheEntry<V> entry, long now) {
+            return expirationTimeout > 0
+                    && now - entry.writeTime >= expirationTimeout;
+        }
+
+        private void remove(K key, CacheEntry<V> entry, RemovalCause cause) {
+            if (map.remove(key, entry)) {
+                if (RemovalCause.SIZE.equals(cause)
+                        || RemovalCause.EXPIRED.equals(cause)) {
+                    evictionCount.increment();
+                }
+                if (listener != null) {
+                    listener.entryInvalidated(key, cause.toString());
+                }
+            }
+        }
+
+        private void removeAll(ComputingCache.KeyPredicate<K> keyPredicate,
+                RemovalCause cause) {
+            if (keyPredicate == null && listener == null
+                    && RemovalCause.EXPLICIT.equals(cause)) {
+                map.clear();
+                return;
+            }
+            for (Map.Entry<K, CacheEntry<V>> entry : map.entrySet()) {
+                if (keyPredicate == null
+                        || keyPredicate.apply(entry.getKey())) {
+                    remove(entry.getKey(), entry.getValue(), cause);
+                }
+            }
+        }
+
+        /**
+         * Entries which are not accessed anymore would never expire - so we
+         * remove all expired entries at most once per expiration timeout.
+         */
+        private void cleanUpIfNeeded() {
+            long now = System.nanoTime();
+            long next = nextCleanup.get();
+            if (now - next >= 0
+                    && nextCleanup.compareAndSet(next, now + expirationTimeout)) {
+                for (Map.Entry<K, CacheEntry<V>> entry : map.entrySet()) {
+                    if (isExpired(entry.getValue(), now)) {
+                        remove(entry.getKey(), entry.getValue(),
+                                RemovalCause.EXPIRED);
+                    }
+                }
+            }
         }
 
         private synchronized void handleMaxSizeExceeding() {
@@ -181,7 +356,7 @@ public class MapBackedComputingCacheFactory extends AbstractConfigurationAware
                 logger.debug(
                         "Max size limit of {} exceeded - removing all entries from the cache",
                         maxSize);
-                map.clear();
+                removeAll(null, RemovalCause.SIZE);
                 break;
             default:
                 logger.warn(
@@ -191,6 +366,109 @@ public class MapBackedComputingCacheFactory extends AbstractConfigurationAware
             }
         }
 
+        /**
+         * Evict entries until the max size limit is not exceeded. The victim is
+         * the least frequently used entry from a small sample. If the
+         * candidate, i.e. the entry which was just added, is used less
+         * frequently than the victim, the candidate is evicted instead
+         * (TinyLFU admission). Ties are resolved in favor of the candidate so
+         * that a new working set is not locked out of the cache.
+         *
+         * @param candidate
+         */
+        private synchronized void evict(K candidate) {
+            while (map.size() > maxSize) {
+                K victim = sampleVictim(candidate);
+                if (victim == null) {
+                    if (map.size() <= maxSize) {
+                        // Expired entries removed during sampling
+                        break;
+                    }
+                    victim = candidate;
+                } else if (sketch.frequency(candidate) < sketch
+                        .frequency(victim)) {
+                    victim = candidate;
+                }
+                CacheEntry<V> entry = map.get(victim);
+                if (entry != null) {
+                    remove(victim, entry, RemovalCause.SIZE);
+                }
+                if (victim.equals(candidate)) {
+                    // The candidate was not admitted - the other threads
+                    // adding new entries will take care of the rest
+                    break;
+                }
+            }
+        }
+
+        /**
+         * The sample is taken by a "clock hand" which goes around the map, so
+         * that subsequent evictions do not inspect the same entries. Expired
+         * entries are removed immediately.
+         *
+         * @param candidate
+         * @return the least frequently used key from the sample or
+         *         <code>null</code> if no such key was found
+         */
+        private K sampleVictim(K candidate) {
+            long now = System.nanoTime();
+            K victim = null;
+            int victimFrequency = Integer.MAX_VALUE;
+            // Do not go around the map more than once
+            int remaining = Math.min(EVICTION_SAMPLE_SIZE, map.size());
+            boolean restarted = false;
+            while (remaining > 0) {
+                if (evictionHand == null || !evictionHand.hasNext()) {
+                    if (restarted) {
+                        break;
+                    }
+                    evictionHand = map.keySet().iterator();
+                    restarted = true;
+                    if (!evictionHand.hasNext()) {
+                        break;
+                    }
+                }
+                K key = evictionHand.next();
+                if (key.equals(candidate)) {
+                    continue;
+                }
+                remaining--;
+                CacheEntry<V> entry = map.get(key);
+                if (entry == null) {
+                    continue;
+                }
+                if (isExpired(entry, now)) {
+                    remove(key, entry, RemovalCause.EXPIRED);
+                    continue;
+                }
+                int frequency = sketch.frequency(key);
+                if (frequency < victimFrequency) {
+                    victim = key;
+                    victimFrequency = frequency;
+                }
+            }
+            return victim;
+        }
+
+    }
+
+    /**
+     *
+     * @author Martin Kouba
+     *
+     * @param <V>
+     */
+    private static class CacheEntry<V> {
+
+        private final V value;
+
+        private final long writeTime;
+
+        CacheEntry(V value, long writeTime) {
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+
     }
 
     /**
@@ -201,7 +479,7 @@ public class MapBackedComputingCacheFactory extends AbstractConfigurationAware
      * @param <V>
      */
     private static class FunctionAdapter<K, V> implements
-            java.util.function.Function<K, V> {
+            java.util.function.Function<K, CacheEntry<V>> {
 
         private final Function<K, V> computingFunction;
 
@@ -219,14 +497,29 @@ public class MapBackedComputingCacheFactory extends AbstractConfigurationAware
         }
 
         @Override
-        public V apply(K key) {
+        public CacheEntry<V> apply(K key) {
             // Note that computation must not attempt to update any other
             // mappings of the map - therefore we cannot perform eviction here
             if (mapAdapter.maxSize != null
+                    && MaxSizeStrategy.CLEAR
+                            .equals(mapAdapter.maxSizeStrategy)
                     && mapAdapter.map.size() > mapAdapter.maxSize) {
                 throw new MaxSizeExceededException();
             }
-            return computingFunction.compute(key);
+            long start = System.nanoTime();
+            V value;
+            try {
+                value = computingFunction.compute(key);
+            } catch (RuntimeException e) {
+                mapAdapter.totalLoadTime.add(System.nanoTime() - start);
+                mapAdapter.loadExceptionCount.increment();
+                throw e;
+            }
+            mapAdapter.totalLoadTime.add(System.nanoTime() - start);
+            mapAdapter.loadSuccessCount.increment();
+            return value != null ? new CacheEntry<V>(value,
+                    mapAdapter.expirationTimeout > 0 ? System.nanoTime() : 0)
+                    : null;
         }
 
     }
@@ -245,7 +538,17 @@ public class MapBackedComputingCacheFactory extends AbstractConfigurationAware
         /**
          * Remove all entries from the cache
          */
-        CLEAR(true), ;
+        CLEAR(true),
+        /**
+         * Evict the least frequently used entries. The access frequency is
+         * estimated by a compact probabilistic sketch which also decides
+         * whether a new entry should be admitted at all (TinyLFU). The victim
+         * is selected from a small sample of entries so that no additional
+         * ordering structure is needed.
+         *
+         * @since 1.8.1
+         */
+        EVICT(true), ;
 
         private MaxSizeStrategy(boolean isEvictionSupported) {
             this.isEvictionSupported = isEvictionSupported;
@@ -270,4 +573,14 @@ public class MapBackedComputingCacheFactory extends AbstractConfigurationAware
 
     }
 
+    /**
+     * Same names as Guava's RemovalCause so that the listeners get consistent
+     * notifications.
+     */
+    private static enum RemovalCause {
+
+        EXPLICIT, REPLACED, SIZE, EXPIRED, ;
+
+    }
+
 }
@@ -0,0 +1,76 @@
+package org.trimou.jdk8.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Martin Kouba
+ */
+public class FrequencySketchTest {
+
+    @Test
+    public void testFrequency() {
+        FrequencySketch sketch = new FrequencySketch(100);
+        assertEquals(0, sketch.frequency("foo"));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("foo");
+        }
+        assertEquals(5, sketch.frequency("foo"));
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("foo");
+        }
+        assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency("foo"));
+    }
+
+    @Test
+    public void testConcurrentIncrementsNeverOverflow() throws Exception {
+
+        final int threads = 8;
+        final int rounds = 2000;
+        final int increments = 64;
+        final String key = "hot";
+        final FrequencySketch[] sketches = new FrequencySketch[rounds];
+        for (int i = 0; i < rounds; i++) {
+            sketches[i] = new FrequencySketch(100);
+        }
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    // All the threads hammer the same key of a fresh sketch
+                    // in each round
+                    for (FrequencySketch sketch : sketches) {
+                        barrier.await();
+                        for (int j = 0; j < increments; j++) {
+                            sketch.increment(key);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (FrequencySketch sketch : sketches) {
+            // A counter overflow would make the hottest key look cold
+            assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(key));
+        }
+    }
+
+}
@@ -1,6 +1,16 @@
 package org.trimou.jdk8.cache;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
 import org.trimou.engine.MustacheEngineBuilder;
+import org.trimou.engine.cache.ComputingCache;
 import org.trimou.engine.cache.ComputingCacheTest;
 
 /**
@@ -18,4 +28,84 @@ public class MapBackedComputingCacheTest extends
                         new MapBackedComputingCacheFactory()).build();
     }
 
+    @Test
+    public void testFrequentEntriesNotEvicted() {
+        ComputingCache<Long, String> cache = new MapBackedComputingCacheFactory()
+                .create("test", new ComputingCache.Function<Long, String>() {
+                    @Override
+                    public String compute(Long key) {
+                        return key.toString();
+                    }
+                }, null, 10l, null);
+        for (int i = 0; i < 5; i++) {
+            for (long j = 0; j < 10; j++) {
+                cache.get(j);
+            }
+        }
+        // One-hit wonders must not flush the frequently used entries
+        for (long i = 100; i < 200; i++) {
+            assertEquals("" + i, cache.get(i));
+        }
+        assertEquals(10, cache.size());
+        for (long i = 0; i < 10; i++) {
+            assertNotNull(cache.getIfPresent(i));
+        }
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        final AtomicInteger computations = new AtomicInteger();
+        final List<String> causes = new CopyOnWriteArrayList<String>();
+        ComputingCache<String, Integer> cache = new MapBackedComputingCacheFactory()
+                .create("test", new ComputingCache.Function<String, Integer>() {
+                    @Override
+                    public Integer compute(String key) {
+                        return computations.incrementAndGet();
+                    }
+                }, 50l, null, new ComputingCache.Listener<String>() {
+                    @Override
+                    public void entryInvalidated(String key, String cause) {
+                        causes.add(cause);
+                    }
+                });
+        assertEquals(Integer.valueOf(1), cache.get("foo"));
+        assertEquals(Integer.valueOf(1), cache.get("foo"));
+        Thread.sleep(100);
+        assertNull(cache.getIfPresent("foo"));
+        assertEquals(Integer.valueOf(2), cache.get("foo"));
+        assertEquals(1, causes.size());
+        assertEquals("EXPIRED", causes.get(0));
+    }
+
+    @Test
+    public void testListener() {
+        final List<String> keys = new CopyOnWriteArrayList<String>();
+        ComputingCache<String, String> cache = new MapBackedComputingCacheFactory()
+                .create("test", new ComputingCache.Function<String, String>() {
+                    @Override
+                    public String compute(String key) {
+                        return key.toUpperCase();
+                    }
+                }, null, null, new ComputingCache.Listener<String>() {
+                    @Override
+                    public void entryInvalidated(String key, String cause) {
+                        assertEquals("EXPLICIT", cause);
+                        keys.add(key);
+                    }
+                });
+        cache.get("foo");
+        cache.get("bar");
+        cache.invalidate(new ComputingCache.KeyPredicate<String>() {
+            @Override
+            public boolean apply(String key) {
+                return key.startsWith("f");
+            }
+        });
+        assertEquals(1, keys.size());
+        assertEquals("foo", keys.get(0));
+        cache.clear();
+        assertEquals(2, keys.size());
+        assertEquals(0, cache.size());
+    }
+
 }
@@ -34,6 +34,7 @@ import org.trimou.engine.priority.WithPriority;
 import org.trimou.engine.resolver.AbstractResolver;
 import org.trimou.engine.resolver.ResolutionContext;
 import org.trimou.engine.resolver.Resolver;
+import org.trimou.engine.resolver.TypeAwareResolver;
 import org.trimou.engine.resource.ReleaseCallback;
 import org.trimou.engine.validation.Validateable;
 import org.trimou.servlet.RequestHolder;
@@ -51,7 +52,7 @@ import org.trimou.servlet.RequestHolder;
  * @see Resolver
  */
 public class HttpServletRequestResolver extends AbstractResolver implements
-        MustacheListener, Validateable {
+        MustacheListener, Validateable, TypeAwareResolver {
 
     public static final int SERVLET_REQUEST_RESOLVER_PRIORITY = rightAfter(WithPriority.EXTENSION_RESOLVERS_DEFAULT_PRIORITY);
 
@@ -75,6 +76,11 @@ public class HttpServletRequestResolver extends AbstractResolver implements
         super(priority);
     }
 
+    @Override
+    public boolean isApplicable(Class<?> contextObjectClass) {
+        return contextObjectClass == null;
+    }
+
     @Override
     public Object resolve(Object contextObject, String name,
             ResolutionContext context) {